@@ -0,0 +1,50 @@
+package com.armymen.benchmarks;
+
+import com.armymen.entities.Building;
+import com.armymen.entities.Bulldozer;
+import com.armymen.systems.UnitStore;
+
+import com.badlogic.gdx.math.Vector2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Ciclo completo del bulldozer: ir al sitio, construir y volver a empezar. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulldozerBenchmark {
+
+    private UnitStore store;
+    private Bulldozer bulldozer;
+    private final Vector2 site = new Vector2(600, 600);
+    private int built;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new UnitStore(1);
+        bulldozer = new Bulldozer(store, new Vector2(500, 500));
+        bulldozer.setBuildListener(new Bulldozer.BuildListener() {
+            @Override
+            public void onBuildingCreated(Building building) {
+                built++;
+            }
+        });
+    }
+
+    @Benchmark
+    public int update() {
+        bulldozer.orderBuild(site); // se ignora mientras está ocupado
+        store.integrate(WorldFixture.TICK);
+        bulldozer.update(WorldFixture.TICK);
+        return built;
+    }
+}
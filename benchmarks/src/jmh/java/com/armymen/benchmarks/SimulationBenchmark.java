@@ -0,0 +1,172 @@
+package com.armymen.benchmarks;
+
+import com.armymen.entities.Building;
+import com.armymen.entities.Unit;
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.FormationPlanner;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caminos calientes de la simulación: movimiento, empujón contra edificios,
+ * selección por rectángulo, validación de colocación, asignación de formación y orden de
+ * movimiento con el campo de flujo ya en caché.
+ *
+ * Los que mueven unidades reparten destinos nuevos en cada iteración y, en cada llamada,
+ * a una porción que va rotando: así siempre hay unidades en marcha y no se mide un mundo
+ * ya parado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SimulationBenchmark {
+
+    private static final int QUERIES = 1024;
+    // Menos destinos que huecos tiene FlowFieldCache: tras el primero, la orden no calcula campos
+    private static final int CACHED_DESTINATIONS = 4;
+    // Cada llamada da destino nuevo a 1/RETARGET_SLICE de las unidades (antes de que lleguen)
+    private static final int RETARGET_SLICE = 1024;
+
+    @Param({"1000", "10000", "50000"})
+    public int units;
+
+    @Param({"100", "2000"})
+    public int buildings;
+
+    @Param({"200"})
+    public int groupSize;
+
+    private GameWorld world;
+    private final Rectangle[] selectionRects = new Rectangle[QUERIES];
+    private final Vector2[] points = new Vector2[QUERIES];
+    private final Array<Unit> selected = new Array<>(false, 1024);
+    private final Array<Building> visibleBuildings = new Array<>(false, 256);
+    private final Array<Unit> group = new Array<>(false, 256);
+    private final FormationPlanner planner = new FormationPlanner(40f);
+    private int query;
+    private final Random retargetRnd = new Random(7L);
+    private int retargetFrom;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        world = WorldFixture.create(units, buildings, 42L);
+
+        Random rnd = new Random(13L);
+        for (int i = 0; i < QUERIES; i++) {
+            // Rectángulos del tamaño de la pantalla, como una selección por arrastre grande
+            selectionRects[i] = new Rectangle(rnd.nextFloat() * (WorldFixture.MAP_SIZE - 1280),
+                rnd.nextFloat() * (WorldFixture.MAP_SIZE - 720), 1280, 720);
+            points[i] = new Vector2(rnd.nextFloat() * WorldFixture.MAP_SIZE, rnd.nextFloat() * WorldFixture.MAP_SIZE);
+        }
+        for (int i = 0; i < groupSize && i < world.getUnits().size; i++) group.add(world.getUnits().get(i));
+    }
+
+    @Setup(Level.Iteration)
+    public void scatter() {
+        // Con los destinos sólo al principio, el mundo se para antes de acabar el calentamiento
+        WorldFixture.scatterTargets(world, 7L + iteration++);
+    }
+
+    @Benchmark
+    public void movementIntegration() {
+        retargetSlice();
+        world.getUnitStore().integrate(WorldFixture.TICK);
+    }
+
+    @Benchmark
+    public void steering() {
+        // Rejilla de vecinos + llegada, separación y esquiva (sin la lógica de cada unidad)
+        retargetSlice();
+        world.getSteering().rebuild(world.getUnitStore());
+        world.getSteering().steer(world.getUnitStore(), 0, world.getUnitStore().size(), WorldFixture.TICK);
+    }
+
+    @Benchmark
+    public void unitUpdateSerial() {
+        retargetSlice();
+        world.setParallel(false);
+        world.updateUnits(WorldFixture.TICK);
+    }
+
+    @Benchmark
+    public void unitUpdateParallel() {
+        retargetSlice();
+        world.setParallel(true);
+        world.updateUnits(WorldFixture.TICK);
+    }
+
+    @Benchmark
+    public void collisionPushOut() {
+        world.resolveBuildingCollisions();
+    }
+
+    @Benchmark
+    public void fullStep() {
+        retargetSlice();
+        world.step(WorldFixture.TICK);
+    }
+
+    @Benchmark
+    public int rectangleSelection() {
+        selected.clear();
+        world.selectInRect(selectionRects[next()], selected);
+        return selected.size;
+    }
+
+    @Benchmark
+    public int visibleQuery() {
+        // Lo mismo que pide el render por frame: una vista de pantalla
+        selected.clear();
+        visibleBuildings.clear();
+        world.queryVisible(selectionRects[next()], visibleBuildings, selected);
+        return selected.size + visibleBuildings.size;
+    }
+
+    @Benchmark
+    public boolean placementCheck() {
+        return world.isSpaceFree(points[next()]);
+    }
+
+    @Benchmark
+    public float formationAssignment() {
+        // Sólo el reparto de huecos: orderMove además pide (o calcula) el campo de flujo
+        Vector2 dest = points[next()];
+        planner.plan(world.getUnitStore(), group, dest.x, dest.y, FormationPlanner.Shape.BOX);
+        return planner.getSlotX(group.size - 1);
+    }
+
+    @Benchmark
+    public void moveOrderCachedField(Blackhole bh) {
+        world.orderMove(group, points[next() % CACHED_DESTINATIONS]);
+        bh.consume(group);
+    }
+
+    private void retargetSlice() {
+        int n = world.getUnits().size;
+        int count = Math.max(1, n / RETARGET_SLICE);
+        WorldFixture.retarget(world, retargetRnd, retargetFrom, count);
+        retargetFrom = (retargetFrom + count) % n;
+    }
+
+    private int next() {
+        query = (query + 1) & (QUERIES - 1);
+        return query;
+    }
+}
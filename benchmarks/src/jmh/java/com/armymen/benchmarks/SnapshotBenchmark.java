@@ -0,0 +1,59 @@
+package com.armymen.benchmarks;
+
+import com.armymen.simulation.GameWorld;
+import com.armymen.simulation.WorldSnapshot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Guardar y cargar la partida entera en el formato binario de {@link WorldSnapshot}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SnapshotBenchmark {
+
+    @Param({"10000", "100000"})
+    public int units;
+
+    @Param({"2000"})
+    public int buildings;
+
+    private GameWorld world;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        world = WorldFixture.create(units, buildings, 42L);
+        WorldFixture.scatterTargets(world, 7L);
+        file = Files.createTempFile("armymen", ".sav");
+        WorldSnapshot.save(world, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void save() {
+        WorldSnapshot.save(world, file);
+    }
+
+    @Benchmark
+    public GameWorld load() {
+        return WorldSnapshot.load(file);
+    }
+}
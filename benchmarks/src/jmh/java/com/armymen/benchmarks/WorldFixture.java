@@ -0,0 +1,37 @@
+package com.armymen.benchmarks;
+
+import com.armymen.simulation.GameWorld;
+
+import com.badlogic.gdx.math.Vector2;
+
+import java.util.Random;
+
+/** Construye mundos reproducibles (misma semilla) para los benchmarks. */
+final class WorldFixture {
+
+    static final float MAP_SIZE = 16_000f;
+    static final float TICK = 1f / 30f;
+
+    private WorldFixture() {}
+
+    /** El mismo mundo que el escenario de carga headless ({@link GameWorld#createLoadTest}). */
+    static GameWorld create(int units, int buildings, long seed) {
+        return GameWorld.createLoadTest(MAP_SIZE, units, buildings, new Random(seed));
+    }
+
+    private static final Vector2 target = new Vector2();
+
+    /** Da a cada unidad un destino al azar para que haya movimiento que integrar. */
+    static void scatterTargets(GameWorld world, long seed) {
+        retarget(world, new Random(seed), 0, world.getUnits().size);
+    }
+
+    /** Destino al azar para {@code count} unidades desde {@code from}, dando la vuelta al final. */
+    static void retarget(GameWorld world, Random rnd, int from, int count) {
+        int n = world.getUnits().size;
+        for (int k = 0; k < count; k++) {
+            target.set(rnd.nextFloat() * MAP_SIZE, rnd.nextFloat() * MAP_SIZE);
+            world.getUnits().get((from + k) % n).setTarget(target);
+        }
+    }
+}
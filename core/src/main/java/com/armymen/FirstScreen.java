@@ -1,45 +1,104 @@
 package com.armymen;
 
+import com.armymen.screens.GameScreen;
+import com.armymen.systems.AssetManifest;
+import com.armymen.systems.TextureRegistry;
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 
-/** First screen of the application. Displayed after the application is created. */
+/**
+ * Pantalla de carga. Encola los recursos de assets.txt en el AssetManager y los va
+ * cargando en segundo plano unos milisegundos por frame mientras dibuja el progreso.
+ * Al terminar empaqueta los sprites en el atlas y pasa a {@link GameScreen}, así
+ * ninguna entidad creada después vuelve a leer del disco.
+ */
 public class FirstScreen implements Screen {
+
+    private static final int LOAD_BUDGET_MS = 12;   // tiempo de carga por frame (la UI sigue fluida)
+    private static final float BAR_WIDTH = 400f, BAR_HEIGHT = 24f;
+
+    private final MainGame game;
+    private final AssetManager assets;
+    private final AssetManifest manifest = new AssetManifest();
+
+    private OrthographicCamera camera;
+    private ShapeRenderer shape;
+    private SpriteBatch batch;
+    private BitmapFont font;    // fuente integrada en libGDX: no depende de lo que se está cargando
+    private boolean done;
+
+    public FirstScreen(MainGame game) {
+        this.game = game;
+        this.assets = game.getAssets();
+    }
+
     @Override
     public void show() {
-        // Prepare your screen here.
+        camera = new OrthographicCamera();
+        camera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        shape = new ShapeRenderer();
+        batch = new SpriteBatch();
+        font = new BitmapFont();
+        manifest.queue(assets);
     }
 
     @Override
     public void render(float delta) {
-        // Draw your screen here. "delta" is the time since last render in seconds.
-    }
+        if (done) return;
+        boolean finished = assets.update(LOAD_BUDGET_MS);
+        float progress = assets.getProgress();
 
-    @Override
-    public void resize(int width, int height) {
-        // If the window is minimized on a desktop (LWJGL3) platform, width and height are 0, which causes problems.
-        // In that case, we don't resize anything, and wait for the window to be a normal size before updating.
-        if(width <= 0 || height <= 0) return;
+        Gdx.gl.glClearColor(1, 1, 1, 1);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-        // Resize your screen here. The parameters represent the new window size.
-    }
+        float x = (camera.viewportWidth - BAR_WIDTH) / 2f, y = camera.viewportHeight / 2f - BAR_HEIGHT / 2f;
+        shape.setProjectionMatrix(camera.combined);
+        shape.begin(ShapeRenderer.ShapeType.Filled);
+        shape.setColor(Color.LIGHT_GRAY);
+        shape.rect(x, y, BAR_WIDTH, BAR_HEIGHT);
+        shape.setColor(Color.OLIVE);
+        shape.rect(x, y, BAR_WIDTH * progress, BAR_HEIGHT);
+        shape.end();
 
-    @Override
-    public void pause() {
-        // Invoked when your application is paused.
-    }
+        batch.setProjectionMatrix(camera.combined);
+        batch.begin();
+        font.setColor(Color.BLACK);
+        font.draw(batch, "Cargando... " + (int) (progress * 100) + "%", x, y + BAR_HEIGHT + 24f);
+        batch.end();
 
-    @Override
-    public void resume() {
-        // Invoked when your application is resumed after pause.
+        if (finished) {
+            done = true;
+            // Todos los sprites a la página del atlas de una vez (una sola subida a la GPU)
+            TextureRegistry.preload(manifest.getSprites().toArray(String.class));
+            game.setScreen(new GameScreen(game));
+            dispose();
+        }
     }
 
     @Override
-    public void hide() {
-        // This method is called when another screen replaces this one.
+    public void resize(int width, int height) {
+        // Minimizada en escritorio: ancho y alto 0, no hay nada que ajustar
+        if (width <= 0 || height <= 0) return;
+        camera.setToOrtho(false, width, height);
     }
 
+    @Override public void pause() {}
+    @Override public void resume() {}
+    @Override public void hide() {}
+
     @Override
     public void dispose() {
-        // Destroy screen's assets here.
+        if (shape == null) return;
+        shape.dispose();
+        batch.dispose();
+        font.dispose();
+        shape = null;
     }
 }
@@ -1,12 +1,65 @@
 package com.armymen;
 
-import com.armymen.screens.GameScreen;
+import com.armymen.net.LockstepClient;
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.TextureRegistry;
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.assets.AssetManager;
+
+import java.nio.file.Path;
 
 public class MainGame extends Game {
 
+    // Dueño de todos los recursos cargados (texturas de UI, skin, imágenes de sprites)
+    private AssetManager assets;
+    // Conexión de la partida en red, o null para jugar solo
+    private final LockstepClient lockstep;
+    // Lado del mapa para jugar solo (en red se usa siempre el de por defecto)
+    private final float mapSize;
+    // Mapa en disco para jugar solo, o null para generar uno de mapSize
+    private final Path mapFile;
+
+    public MainGame() {
+        this(null, GameWorld.DEFAULT_MAP_SIZE, null);
+    }
+
+    public MainGame(LockstepClient lockstep, float mapSize, Path mapFile) {
+        this.lockstep = lockstep;
+        this.mapSize = mapSize;
+        this.mapFile = mapFile;
+    }
+
     @Override
     public void create() {
-        setScreen(new GameScreen(this));
+        assets = new AssetManager();
+        TextureRegistry.setAssetManager(assets);
+        // Primero la pantalla de carga; ella pasa a GameScreen cuando termina
+        setScreen(new FirstScreen(this));
+    }
+
+    public AssetManager getAssets() {
+        return assets;
+    }
+
+    public LockstepClient getLockstep() {
+        return lockstep;
+    }
+
+    public float getMapSize() {
+        return mapSize;
+    }
+
+    public Path getMapFile() {
+        return mapFile;
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (getScreen() != null) getScreen().dispose();
+        TextureRegistry.disposeAll();
+        TextureRegistry.setAssetManager(null);
+        assets.dispose();
+        if (lockstep != null) lockstep.close();
     }
 }
@@ -1,24 +1,30 @@
 package com.armymen.entities;
 
-import com.badlogic.gdx.graphics.Texture;
+import com.armymen.systems.TextureRegistry;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 
 public class Building {
 
+    /** Lado del edificio en píxeles (los edificios son cuadrados y centrados en su posición). */
+    public static final float SIZE = 80f;
+
     private Vector2 position;
-    private Texture texture;
+    private TextureRegion texture;
+    private final String texturePath;
     private Rectangle bounds;
 
     public Building(Vector2 position, String texturePath) {
         this.position = position;
-        this.texture = new Texture(texturePath);
-        this.bounds = new Rectangle(position.x - 40, position.y - 40, 80, 80); // tamaño base
+        this.texturePath = texturePath; // la textura se pide al dibujar por primera vez
+        this.bounds = new Rectangle(position.x - SIZE / 2f, position.y - SIZE / 2f, SIZE, SIZE); // tamaño base
     }
 
     public void render(SpriteBatch batch) {
-        batch.draw(texture, position.x - 40, position.y - 40, 80, 80);
+        if (texture == null) texture = TextureRegistry.acquire(texturePath);
+        batch.draw(texture, bounds.x, bounds.y, SIZE, SIZE);
     }
 
     public Rectangle getBounds() {
@@ -28,4 +34,16 @@ public class Building {
     public Vector2 getPosition() {
         return position;
     }
+
+    public String getTexturePath() {
+        return texturePath;
+    }
+
+    /** Devuelve la textura al registro. */
+    public void dispose() {
+        if (texture != null) {
+            TextureRegistry.release(texturePath);
+            texture = null;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.armymen.entities;
 
-import com.badlogic.gdx.graphics.Texture;
+import com.armymen.jfr.GameEvents;
+import com.armymen.systems.UnitStore;
 import com.badlogic.gdx.math.Vector2;
 
 public class Bulldozer extends Unit {
@@ -11,12 +12,16 @@ public class Bulldozer extends Unit {
     private float buildTime = 3f;           // segundos para construir
     private Vector2 pendingBuildPos;        // posición real del edificio
     private Vector2 buildApproachPos;       // posición donde el bulldozer se detiene
+    private Building completedBuilding;     // terminado en este tick, pendiente de notificar
 
-    private static BuildListener buildListener;
+    // Evento JFR de la obra en curso (sólo con --jfr)
+    private GameEvents.Construction construction;
+    private long orderedAt, startedAt;
 
-    public Bulldozer(Vector2 startPos) {
-        super(startPos);
-        this.setTexture(new Texture("bulldozer.png"));
+    private BuildListener buildListener;
+
+    public Bulldozer(UnitStore store, Vector2 startPos) {
+        super(store, startPos, "bulldozer.png");
     }
 
     @Override
@@ -25,7 +30,7 @@ public class Bulldozer extends Unit {
 
         // Si está yendo al lugar de construcción
         if (movingToBuild && buildApproachPos != null) {
-            if (position.dst(buildApproachPos) < 8f) { // llegó a su punto de parada
+            if (buildApproachPos.dst(getX(), getY()) < 8f) { // llegó a su punto de parada
                 movingToBuild = false;
                 startBuilding(); // comienza la construcción
             }
@@ -42,8 +47,8 @@ public class Bulldozer extends Unit {
         }
     }
 
-    /** Llamado desde GameScreen cuando se da la orden de construir */
-    public void orderBuild(Vector2 pos) {
+    /** Llamado desde GameWorld cuando se da la orden de construir. Devuelve false si está ocupado. */
+    public boolean orderBuild(Vector2 pos) {
         if (!constructing && !movingToBuild) {
             pendingBuildPos = pos.cpy(); // donde irá el edificio
 
@@ -52,33 +57,89 @@ public class Bulldozer extends Unit {
 
             setTarget(buildApproachPos);
             movingToBuild = true;
+            if (GameEvents.enabled) {
+                construction = new GameEvents.Construction();
+                construction.begin();
+                orderedAt = System.nanoTime();
+            }
+            return true;
         }
+        return false;
     }
 
     /** Empieza la construcción cuando llega al destino */
     private void startBuilding() {
         constructing = true;
         buildTimer = 0f;
+        if (construction != null) startedAt = System.nanoTime();
     }
 
-    /** Termina la construcción y crea el edificio */
+    /**
+     * Termina la construcción y crea el edificio. No avisa todavía al listener:
+     * update() puede correr en un hilo de trabajo; el aviso sale en flushBuildEvents().
+     */
     private void finishBuilding() {
-        if (pendingBuildPos != null && buildListener != null) {
-            Building newBuilding = new Building(pendingBuildPos, "building_storage.png");
-            buildListener.onBuildingCreated(newBuilding);
+        if (pendingBuildPos != null) {
+            completedBuilding = new Building(pendingBuildPos, "building_storage.png");
+            if (construction != null) {
+                long now = System.nanoTime();
+                construction.x = pendingBuildPos.x;
+                construction.y = pendingBuildPos.y;
+                construction.travelNanos = startedAt - orderedAt;
+                construction.buildNanos = now - startedAt;
+                construction.commit();
+                construction = null;
+            }
             pendingBuildPos = null;
             buildApproachPos = null;
         }
     }
 
+    /** Punto de sincronización: notifica en el hilo principal el edificio terminado, si lo hay. */
+    public void flushBuildEvents() {
+        if (completedBuilding != null) {
+            if (buildListener != null) buildListener.onBuildingCreated(completedBuilding);
+            completedBuilding = null;
+        }
+    }
+
     public boolean isConstructing() { return constructing; }
+    public boolean isMovingToBuild() { return movingToBuild; }
+    public float getBuildTimer() { return buildTimer; }
+
+    /** Posición del edificio en obra (null si no tiene orden). */
+    public Vector2 getPendingBuildPos() { return pendingBuildPos; }
+
+    /**
+     * Restaura una obra guardada en una partida. El destino de movimiento y la reserva
+     * del hueco los pone GameWorld.
+     */
+    public void restoreBuild(boolean movingToBuild, boolean constructing, float buildTimer,
+                             float pendingX, float pendingY) {
+        this.movingToBuild = movingToBuild;
+        this.constructing = constructing;
+        this.buildTimer = buildTimer;
+        if (movingToBuild || constructing) {
+            pendingBuildPos = new Vector2(pendingX, pendingY);
+            buildApproachPos = new Vector2(pendingX, pendingY - 80);
+        } else {
+            pendingBuildPos = null;
+            buildApproachPos = null;
+        }
+    }
+
+    /** ¿Tiene ya una obra (en camino o construyendo)? Entonces ignora nuevas órdenes. */
+    public boolean isBusy() { return constructing || movingToBuild; }
+
+    /** Punto donde se detiene para construir (null si no tiene orden). */
+    public Vector2 getBuildApproachPos() { return buildApproachPos; }
 
-    // --- Sistema de listener para notificar al GameScreen ---
+    // --- Sistema de listener para notificar al mundo (uno por bulldozer: puede haber varios mundos) ---
     public interface BuildListener {
         void onBuildingCreated(Building building);
     }
 
-    public static void setBuildListener(BuildListener listener) {
+    public void setBuildListener(BuildListener listener) {
         buildListener = listener;
     }
 }
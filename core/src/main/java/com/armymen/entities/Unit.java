@@ -1,53 +1,102 @@
 package com.armymen.entities;
 
-import com.badlogic.gdx.graphics.Texture;
+import com.armymen.systems.FlowField;
+import com.armymen.systems.PathHandle;
+import com.armymen.systems.TextureRegistry;
+import com.armymen.systems.UnitStore;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 
+/**
+ * Vista ligera sobre una fila de {@link UnitStore}.
+ * Posición, destino y velocidad viven en el almacén; aquí sólo queda lo que
+ * no participa en el bucle de movimiento (textura, radio, lógica propia).
+ */
 public class Unit {
 
-    // Cambiar de 'private' → 'protected' para que Bulldozer y otras subclases puedan usarlo
-    protected Vector2 position;
-    protected Vector2 target;
-    protected float speed = 200f;
+    protected final UnitStore store;
+    protected final int id;
     protected float radius = 25f;
-    protected Texture tex;
+    protected TextureRegion tex;
+    private final String texturePath;
 
-    public Unit(Vector2 startPos) {
-        this.position = new Vector2(startPos);
-        this.target = new Vector2(startPos);
-        this.tex = new Texture("soldier.png");
+    // Copia de la posición para quien necesite un Vector2 (se refresca en getPosition)
+    private final Vector2 position = new Vector2();
+
+    public Unit(UnitStore store, Vector2 startPos) {
+        this(store, startPos, "soldier.png");
+    }
+
+    /**
+     * Las subclases indican su propia textura. Se pide prestada al registro la primera
+     * vez que se dibuja, así la simulación puede crear unidades sin contexto GL.
+     */
+    protected Unit(UnitStore store, Vector2 startPos, String texturePath) {
+        this.store = store;
+        this.id = store.add(startPos.x, startPos.y, 200f);
+        this.texturePath = texturePath;
     }
 
+    /** Lógica propia de la unidad. El movimiento lo integra {@link UnitStore#integrate(float)}. */
     public void update(float delta) {
-        if (!position.epsilonEquals(target, 1f)) {
-            Vector2 dir = new Vector2(target).sub(position);
-            float len = dir.len();
-            if (len > 1f) {
-                dir.nor();
-                position.mulAdd(dir, speed * delta);
-            } else {
-                position.set(target);
-            }
-        }
     }
 
-    public void render(SpriteBatch batch) {
-        if (tex != null) {
-            batch.draw(tex, position.x - 20, position.y - 20, 40, 40);
-        }
+    /** Dibuja la unidad interpolada entre el tick anterior y el actual. */
+    public void render(SpriteBatch batch, float alpha) {
+        if (tex == null) tex = TextureRegistry.acquire(texturePath);
+        batch.draw(tex, getRenderX(alpha) - 20, getRenderY(alpha) - 20, 40, 40);
     }
 
     public boolean contains(Vector2 point) {
-        return new Circle(position, radius).contains(point);
+        return contains(point.x, point.y);
     }
 
-    public void setTexture(Texture texture) {
-        this.tex = texture;
+    public boolean contains(float px, float py) {
+        float dx = px - store.x[id];
+        float dy = py - store.y[id];
+        return dx * dx + dy * dy <= radius * radius;
     }
 
-    public void setTarget(Vector2 target) { this.target.set(target); }
+    public float getRadius() { return radius; }
 
-    public Vector2 getPosition() { return position; }
+    public void setTarget(Vector2 target) {
+        store.setTarget(id, target.x, target.y);
+    }
+
+    /** Va hacia target siguiendo un campo de flujo compartido (esquiva edificios). */
+    public void setTarget(Vector2 target, FlowField field) {
+        store.setFlowTarget(id, field, target.x, target.y);
+    }
+
+    /** Sigue los puntos de paso de un camino pedido a PathService. */
+    public void followPath(PathHandle handle) {
+        store.setPathTarget(id, handle);
+    }
+
+    public void setPosition(float x, float y) {
+        store.x[id] = x;
+        store.y[id] = y;
+    }
+
+    public float getRenderX(float alpha) { return store.renderX(id, alpha); }
+    public float getRenderY(float alpha) { return store.renderY(id, alpha); }
+
+    public float getX() { return store.x[id]; }
+    public float getY() { return store.y[id]; }
+    public int getId() { return id; }
+
+    /** Jugador dueño de la unidad. */
+    public int getOwner() { return store.owner[id]; }
+
+    /** Posición actual como Vector2 de sólo lectura (para modificarla usa setPosition). */
+    public Vector2 getPosition() { return position.set(store.x[id], store.y[id]); }
+
+    /** Devuelve la textura al registro. */
+    public void dispose() {
+        if (tex != null) {
+            TextureRegistry.release(texturePath);
+            tex = null;
+        }
+    }
 }
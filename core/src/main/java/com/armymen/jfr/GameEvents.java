@@ -0,0 +1,108 @@
+package com.armymen.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Eventos propios para Java Flight Recorder: ticks, colisiones, selección, órdenes de
+ * movimiento, obras del bulldozer y gastos fallidos. Así una grabación muestra el juego
+ * junto a los datos de GC y JIT.
+ *
+ * Apagados (lo normal) cuestan una lectura de {@link #enabled} por punto de medida:
+ * no se crea ningún objeto. Se encienden con {@code --jfr} en el lanzador de escritorio.
+ */
+public final class GameEvents {
+
+    /** Sólo se cambia al arrancar, antes de crear el juego. */
+    public static boolean enabled;
+
+    private GameEvents() {}
+
+    /**
+     * Enciende los eventos. Si la JVM no está grabando ya (-XX:StartFlightRecording),
+     * empieza una grabación con la configuración "profile" que se vuelca a {@code file} al salir.
+     */
+    public static void start(Path file) throws IOException, ParseException {
+        enabled = true;
+        if (!FlightRecorder.isAvailable()) return;
+        for (Recording r : FlightRecorder.getFlightRecorder().getRecordings()) {
+            if (r.getState() == RecordingState.RUNNING) return;
+        }
+        Recording recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("ArmyMen");
+        recording.setToDisk(true);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+    }
+
+    @Name("armymen.SimulationTick")
+    @Label("Simulation Tick")
+    @Category({"ArmyMen", "Simulation"})
+    @Description("Un tick de simulación de duración fija")
+    public static final class Tick extends Event {
+        @Label("Units") public int units;
+        @Label("Buildings") public int buildings;
+        @Label("Parallel") public boolean parallel;
+    }
+
+    @Name("armymen.CollisionPass")
+    @Label("Collision Pass")
+    @Category({"ArmyMen", "Simulation"})
+    @Description("Empuje de unidades fuera de los edificios")
+    public static final class CollisionPass extends Event {
+        @Label("Units") public int units;
+    }
+
+    @Name("armymen.SelectionQuery")
+    @Label("Selection Query")
+    @Category({"ArmyMen", "Input"})
+    @Description("Selección por rectángulo o por clic")
+    public static final class SelectionQuery extends Event {
+        @Label("Kind") public String kind;
+        @Label("Candidates") public int candidates;
+        @Label("Results") public int results;
+    }
+
+    @Name("armymen.MoveOrder")
+    @Label("Move Order")
+    @Category({"ArmyMen", "Orders"})
+    @Description("Orden de movimiento a un grupo")
+    public static final class MoveOrder extends Event {
+        @Label("Units") public int units;
+        @Label("Formation") public String formation;
+        @Label("Planner Time") @Timespan(Timespan.NANOSECONDS) public long plannerNanos;
+    }
+
+    @Name("armymen.Construction")
+    @Label("Construction")
+    @Category({"ArmyMen", "Orders"})
+    @Description("Obra del bulldozer: desde la orden hasta el edificio terminado")
+    public static final class Construction extends Event {
+        @Label("X") public float x;
+        @Label("Y") public float y;
+        @Label("Travel Time") @Timespan(Timespan.NANOSECONDS) public long travelNanos;
+        @Label("Build Time") @Timespan(Timespan.NANOSECONDS) public long buildNanos;
+    }
+
+    @Name("armymen.SpendFailed")
+    @Label("Spend Failed")
+    @Category({"ArmyMen", "Economy"})
+    @Description("Intento de gastar más plástico del disponible")
+    public static final class SpendFailed extends Event {
+        @Label("Requested") public int requested;
+        @Label("Available") public int available;
+    }
+}
@@ -0,0 +1,82 @@
+package com.armymen.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Un extremo de socket no bloqueante: junta los bytes leídos en mensajes completos
+ * y guarda en cola lo que no se pudo escribir todavía.
+ */
+final class Connection {
+
+    interface FrameHandler {
+        void onFrame(Connection from, byte type, ByteBuffer payload) throws IOException;
+    }
+
+    final SocketChannel channel;
+    int player = -1;                // lo usa el servidor
+
+    private final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_FRAME + 4);
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private long bytesRead, bytesWritten;
+
+    Connection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /** Lee todo lo disponible y entrega los mensajes completos. Devuelve false si el otro extremo cerró. */
+    boolean read(FrameHandler handler) throws IOException {
+        int n;
+        while ((n = channel.read(in)) > 0) {
+            bytesRead += n;
+            in.flip();
+            while (in.remaining() >= 4) {
+                int start = in.position();
+                int length = in.getInt(start);
+                if (length < 1 || length > Protocol.MAX_FRAME) throw new IOException("Mensaje de " + length + " bytes");
+                if (in.remaining() < 4 + length) break;
+                ByteBuffer payload = in.duplicate();
+                payload.position(start + 5).limit(start + 4 + length);
+                in.position(start + 4 + length);
+                handler.onFrame(this, in.get(start + 4), payload);
+            }
+            in.compact();
+        }
+        return n >= 0;
+    }
+
+    /** Encola un mensaje (hecho con Protocol.begin/end) e intenta enviarlo ya. Devuelve true si queda algo pendiente. */
+    boolean send(ByteBuffer frame) throws IOException {
+        queue(frame);
+        return flush();
+    }
+
+    /** Sólo encola (socket aún conectando); sale en el próximo {@link #flush()}. */
+    void queue(ByteBuffer frame) {
+        out.add(frame.duplicate());
+    }
+
+    /** Escribe lo que admita el socket. Devuelve true si queda algo pendiente. */
+    boolean flush() throws IOException {
+        while (!out.isEmpty()) {
+            ByteBuffer head = out.peek();
+            bytesWritten += channel.write(head);
+            if (head.hasRemaining()) return true;
+            out.poll();
+        }
+        return false;
+    }
+
+    long getBytesRead() { return bytesRead; }
+    long getBytesWritten() { return bytesWritten; }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // ya estaba cerrado
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.armymen.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Conexión de un jugador con el {@link LockstepServer}. No crea hilos: el juego llama a
+ * {@link #poll()} una vez por frame y lo recibido se entrega al {@link Listener} en ese
+ * mismo hilo. Mide la latencia con PING/PONG (media móvil).
+ */
+public class LockstepClient implements Closeable {
+
+    /** Lo que llega de los demás jugadores. */
+    public interface Listener {
+        /** Turno de órdenes de otro jugador; {@code payload} sólo es válido durante la llamada. */
+        void onTurn(ByteBuffer payload);
+        void onPlayerLeft(int player);
+    }
+
+    public static final int DEFAULT_PORT = Protocol.DEFAULT_PORT;
+
+    private final Connection connection;
+    private Listener listener;
+    private boolean connected;
+    private boolean closed;
+    private boolean started;
+    private int localPlayer = -1;
+    private int playerCount;
+    private long rttNanos = -1;
+
+    private LockstepClient(SocketChannel channel) {
+        this.connection = new Connection(channel);
+    }
+
+    /** Empieza a conectar sin bloquear; la conexión se completa en {@link #poll()}. */
+    public static LockstepClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        LockstepClient client = new LockstepClient(channel);
+        client.connected = channel.connect(new InetSocketAddress(host, port));
+        return client;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Termina de conectar, lee lo que haya llegado y envía lo pendiente. Nunca bloquea. */
+    public void poll() {
+        if (closed) return;
+        try {
+            if (!connected) {
+                if (!connection.channel.finishConnect()) return;
+                connected = true;
+            }
+            if (!connection.read(handler)) {
+                close();
+                return;
+            }
+            connection.flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private final Connection.FrameHandler handler = new Connection.FrameHandler() {
+        @Override
+        public void onFrame(Connection from, byte type, ByteBuffer payload) {
+            switch (type) {
+                case Protocol.HELLO:
+                    localPlayer = payload.get();
+                    playerCount = payload.get();
+                    break;
+                case Protocol.START:
+                    playerCount = payload.get();
+                    started = true;
+                    break;
+                case Protocol.TURN:
+                    if (listener != null) listener.onTurn(payload);
+                    break;
+                case Protocol.PONG: {
+                    long rtt = System.nanoTime() - payload.getLong();
+                    rttNanos = rttNanos < 0 ? rtt : (rttNanos * 7 + rtt) / 8;
+                    break;
+                }
+                case Protocol.LEFT:
+                    if (listener != null) listener.onPlayerLeft(payload.get());
+                    break;
+                default:
+                    break;
+            }
+        }
+    };
+
+    /** Envía un turno (payload sin cabecera de mensaje). */
+    void sendTurn(ByteBuffer payload) {
+        send(Protocol.end(Protocol.begin(Protocol.TURN, payload.remaining()).put(payload)));
+    }
+
+    /** Pide un PONG para medir la latencia. */
+    public void ping() {
+        send(Protocol.end(Protocol.begin(Protocol.PING, 8).putLong(System.nanoTime())));
+    }
+
+    private void send(ByteBuffer frame) {
+        if (closed) return;
+        try {
+            if (connected) connection.send(frame);
+            else connection.queue(frame);   // sale al terminar de conectar
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /** Latencia de ida y vuelta en nanosegundos, o -1 si aún no se ha medido. */
+    public long getRttNanos() { return rttNanos; }
+    public boolean isStarted() { return started; }
+    public int getLocalPlayer() { return localPlayer; }
+    public int getPlayerCount() { return playerCount; }
+    public long getBytesSent() { return connection.getBytesWritten(); }
+    public long getBytesReceived() { return connection.getBytesRead(); }
+    public boolean isClosed() { return closed; }
+
+    @Override
+    public void close() {
+        closed = true;
+        connection.close();
+    }
+}
@@ -0,0 +1,180 @@
+package com.armymen.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Servidor de relevo para partidas lockstep: no simula nada. Asigna a cada cliente su
+ * número de jugador, avisa cuando están todos y reenvía a los demás los turnos de
+ * órdenes de cada uno. Un solo hilo con Selector y sockets no bloqueantes.
+ * El jugador que hace de anfitrión lo arranca en su propio proceso.
+ */
+public class LockstepServer implements Runnable, Closeable {
+
+    private final int players;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Connection[] slots;
+    private int joined;
+    private boolean started;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /** Escucha en {@code port} (0 = puerto libre cualquiera) esperando a {@code players} jugadores. */
+    public LockstepServer(int port, int players) throws IOException {
+        if (players < 1 || players > 8) throw new IllegalArgumentException("Jugadores: " + players);
+        this.players = players;
+        this.slots = new Connection[players];
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /** Arranca el bucle del servidor en un hilo propio (demonio). */
+    public void start() {
+        thread = new Thread(this, "lockstep-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(100);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else service(key);
+                }
+            }
+        } catch (IOException e) {
+            if (running) System.err.println("Servidor lockstep detenido: " + e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        if (started || joined == players) {
+            channel.close();    // partida llena o ya empezada
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection c = new Connection(channel);
+        for (int p = 0; p < players; p++) {
+            if (slots[p] == null) {
+                c.player = p;
+                slots[p] = c;
+                break;
+            }
+        }
+        joined++;
+        channel.register(selector, SelectionKey.OP_READ, c);
+        sendOrDrop(c, Protocol.end(Protocol.begin(Protocol.HELLO, 2).put((byte) c.player).put((byte) players)));
+
+        if (joined == players) {
+            started = true;
+            ByteBuffer start = Protocol.end(Protocol.begin(Protocol.START, 1).put((byte) players));
+            for (Connection other : slots) if (other != null) sendOrDrop(other, start);
+        }
+    }
+
+    private void service(SelectionKey key) {
+        final Connection c = (Connection) key.attachment();
+        try {
+            if (key.isReadable() && !c.read(relay)) {
+                disconnect(c);
+                return;
+            }
+            if (key.isValid() && key.isWritable()) updateInterest(c, c.flush());
+        } catch (IOException e) {
+            disconnect(c);
+        }
+    }
+
+    // Turnos: a todos los demás con el jugador de la conexión en el primer byte (nadie
+    // manda turnos en nombre de otro). Ping: se contesta al mismo cliente
+    private final Connection.FrameHandler relay = new Connection.FrameHandler() {
+        @Override
+        public void onFrame(Connection from, byte type, ByteBuffer payload) throws IOException {
+            if (type == Protocol.TURN) {
+                if (!payload.hasRemaining() || from.player < 0) return;
+                ByteBuffer frame = Protocol.begin(Protocol.TURN, payload.remaining());
+                int at = frame.position();
+                frame.put(payload).put(at, (byte) from.player);
+                Protocol.end(frame);
+                for (Connection other : slots) {
+                    if (other != null && other != from) sendOrDrop(other, frame);
+                }
+            } else if (type == Protocol.PING) {
+                updateInterest(from, from.send(Protocol.end(Protocol.begin(Protocol.PONG, 8).putLong(payload.getLong()))));
+            }
+        }
+    };
+
+    /** Envía a un cliente; si su socket falla se le da por desconectado. */
+    private void sendOrDrop(Connection c, ByteBuffer frame) {
+        try {
+            updateInterest(c, c.send(frame));
+        } catch (IOException e) {
+            disconnect(c);
+        }
+    }
+
+    // Con algo en cola pedimos aviso cuando el socket admita más
+    private void updateInterest(Connection c, boolean pending) {
+        SelectionKey key = c.channel.keyFor(selector);
+        if (key != null && key.isValid()) {
+            key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void disconnect(Connection c) {
+        c.close();
+        if (c.player < 0 || slots[c.player] != c) return;
+        slots[c.player] = null;
+        joined--;
+        if (!started) return;
+        ByteBuffer left = Protocol.end(Protocol.begin(Protocol.LEFT, 1).put((byte) c.player));
+        for (Connection other : slots) {
+            if (other != null) sendOrDrop(other, left);
+        }
+    }
+
+    private void closeAll() {
+        for (Connection c : slots) if (c != null) c.close();
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException ignored) {
+            // cerrando igualmente
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (thread == null) closeAll();
+    }
+}
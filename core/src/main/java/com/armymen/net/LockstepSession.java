@@ -0,0 +1,288 @@
+package com.armymen.net;
+
+import com.armymen.simulation.Command;
+import com.armymen.simulation.GameWorld;
+
+import com.badlogic.gdx.utils.Array;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Simulación lockstep: todos los jugadores simulan el mismo mundo y sólo se envían órdenes.
+ *
+ * El tiempo se divide en turnos de varios ticks. Las órdenes que da el jugador durante el
+ * turno t se envían para aplicarse al empezar el turno t+{@value #TURN_DELAY}; así hay un
+ * turno entero de margen para que lleguen a los demás. Un turno no empieza hasta tener los
+ * paquetes de todos los jugadores (si falta alguno, la simulación espera).
+ *
+ * Cada paquete propone la duración del turno según la latencia medida y se usa la mayor
+ * propuesta, igual en todos los clientes. También lleva la huella del mundo
+ * ({@link GameWorld#stateHash()}) al empezar un turno anterior para detectar desincronizaciones.
+ *
+ * Un paquete nunca pasa de {@link Protocol#MAX_FRAME}: las órdenes que no caben salen en el
+ * turno siguiente y las selecciones grandes se parten. Un paquete mal formado no tumba la
+ * partida: todos lo reciben igual, así que todos descartan a ese jugador en el mismo turno.
+ */
+public class LockstepSession implements LockstepClient.Listener {
+
+    public static final int TURN_DELAY = 2;
+    public static final int MIN_TURN_TICKS = 2;
+    public static final int MAX_TURN_TICKS = 15;
+    private static final int INITIAL_TURN_TICKS = 3;
+    private static final int WINDOW = 32;                 // turnos guardados (recibidos y huellas)
+    private static final long PING_INTERVAL_NANOS = 500_000_000L;
+    private static final float LATENCY_MARGIN = 1.5f;     // el retraso cubre la latencia con holgura
+    // Ids por SELECT enviada: aun a 5 bytes por id cabe de sobra en un paquete
+    static final int MAX_SELECT_IDS = 8192;
+    private static final int MAX_PAYLOAD = Protocol.MAX_FRAME - 1;   // la longitud incluye el byte de tipo
+    private static final int MAX_COMMANDS = 0xFFFF;
+
+    // Paquete TURN: jugador, turno, duración propuesta, turno de la huella, huella, nº de órdenes
+    private static final int HEADER_BYTES = 1 + 4 + 1 + 4 + 8 + 2;
+
+    private final GameWorld world;
+    private final LockstepClient client;
+    private final float tickSeconds;
+    private final int localPlayer;
+    private final int players;
+
+    // Paquetes recibidos por turno (índice turn % WINDOW) y jugador
+    private final ByteBuffer[][] packets;
+    private final int[][] packetTurns;
+    private final long[] localHashes = new long[WINDOW];
+    private final boolean[] left;
+    private final boolean[] dropped;        // descartados por mandar un paquete mal formado
+
+    private final Array<Command> pending = new Array<>();
+    private final Array<Command> decoded = new Array<>();
+    private final ByteArrayOutputStream packetBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream packetOut = new DataOutputStream(packetBytes);
+    private final ByteArrayOutputStream commandBytes = new ByteArrayOutputStream(64);
+    private final DataOutputStream commandOut = new DataOutputStream(commandBytes);
+
+    private int turn;               // próximo turno que empieza
+    private int nextTurnTick;
+    private int turnTicks = INITIAL_TURN_TICKS;
+    private boolean stalled;
+    private int desyncTurn = -1;
+    private int desyncPlayer = -1;
+    private int droppedPlayer = -1;
+    private long lastPing;
+    private int turnsSent;
+
+    /** {@code world} debe ser igual en todos los clientes (p. ej. {@link GameWorld#createDefault(int)}). */
+    public LockstepSession(GameWorld world, LockstepClient client, float tickSeconds) {
+        if (!client.isStarted()) throw new IllegalStateException("La partida aún no ha empezado");
+        this.world = world;
+        this.client = client;
+        this.tickSeconds = tickSeconds;
+        this.localPlayer = client.getLocalPlayer();
+        this.players = client.getPlayerCount();
+        this.packets = new ByteBuffer[WINDOW][players];
+        this.packetTurns = new int[WINDOW][players];
+        this.left = new boolean[players];
+        this.dropped = new boolean[players];
+        this.nextTurnTick = world.getTick();
+        // El presupuesto de A* en tiempo depende de la máquina: sólo vale el de nodos
+        world.getPathService().setBudgetMicros(0);
+        client.setListener(this);
+    }
+
+    /**
+     * Orden del jugador local; se aplicará en todos los clientes dentro de {@value #TURN_DELAY}
+     * turnos (o más tarde si en ese turno ya no caben más órdenes).
+     */
+    public void issue(Command command) {
+        if (command.type == Command.Type.SELECT && command.ids.length > MAX_SELECT_IDS) {
+            for (int from = 0; from < command.ids.length; from += MAX_SELECT_IDS) {
+                pending.add(command.slice(from, Math.min(command.ids.length, from + MAX_SELECT_IDS)));
+            }
+        } else {
+            pending.add(command);
+        }
+    }
+
+    /**
+     * Recibe lo que haya llegado y simula hasta {@code steps} ticks. Devuelve los que se
+     * simularon: menos si falta el paquete de algún jugador (ver {@link #isStalled()}).
+     */
+    public int advance(int steps) {
+        client.poll();
+        long now = System.nanoTime();
+        if (now - lastPing > PING_INTERVAL_NANOS) {
+            client.ping();
+            lastPing = now;
+        }
+
+        stalled = false;
+        int done = 0;
+        while (done < steps) {
+            if (world.getTick() == nextTurnTick && !beginTurn()) {
+                stalled = true;
+                break;
+            }
+            world.step(tickSeconds);
+            done++;
+        }
+        client.poll();      // envía ya el paquete del turno que acaba de empezar
+        return done;
+    }
+
+    private boolean beginTurn() {
+        int slot = turn % WINDOW;
+        if (turn >= TURN_DELAY) {
+            for (int p = 0; p < players; p++) {
+                if (!left[p] && !dropped[p] && (packets[slot][p] == null || packetTurns[slot][p] != turn)) return false;
+            }
+        }
+
+        long hash = world.stateHash();
+        localHashes[slot] = hash;
+
+        int proposed = INITIAL_TURN_TICKS;
+        if (turn >= TURN_DELAY) {
+            proposed = MIN_TURN_TICKS;
+            for (int p = 0; p < players; p++) {
+                ByteBuffer packet = packets[slot][p];
+                if (packet == null || packetTurns[slot][p] != turn || dropped[p]) continue;
+                proposed = Math.max(proposed, applyPacket(p, packet));
+                packets[slot][p] = null;
+            }
+        }
+        turnTicks = Math.min(MAX_TURN_TICKS, proposed);
+
+        sendTurn(turn + TURN_DELAY, hash);
+        nextTurnTick = world.getTick() + turnTicks;
+        turn++;
+        return true;
+    }
+
+    // Comprueba la huella y aplica las órdenes del paquete. Devuelve la duración propuesta.
+    // Se decodifica entero antes de aplicar nada: o se aplica todo o se descarta al jugador
+    private int applyPacket(int player, ByteBuffer packet) {
+        int proposed, hashTurn;
+        long hash;
+        decoded.clear();
+        try {
+            packet.position(5);
+            proposed = packet.get();
+            hashTurn = packet.getInt();
+            hash = packet.getLong();
+            int count = packet.getShort() & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                Command c = Command.read(packet, world.getTick(), world.getUnits().size);
+                if (c == null) throw new IllegalArgumentException("orden no válida");
+                decoded.add(c);
+            }
+            if (packet.hasRemaining()) throw new IllegalArgumentException("bytes de sobra");
+        } catch (RuntimeException e) {
+            // Truncado, enteros inválidos, selecciones imposibles...
+            dropped[player] = true;
+            if (droppedPlayer < 0) droppedPlayer = player;
+            decoded.clear();
+            return MIN_TURN_TICKS;
+        }
+
+        if (hashTurn >= 0 && hashTurn > turn - WINDOW && localHashes[hashTurn % WINDOW] != hash && desyncTurn < 0) {
+            desyncTurn = hashTurn;
+            desyncPlayer = player;
+        }
+        for (int i = 0; i < decoded.size; i++) {
+            Command c = decoded.get(i);
+            if (c.player == player) world.execute(c);   // nadie da órdenes en nombre de otro
+        }
+        decoded.clear();
+        return proposed;
+    }
+
+    private void sendTurn(int forTurn, long hash) {
+        packetBytes.reset();
+        int sent = 0;
+        try {
+            packetOut.writeByte(localPlayer);
+            packetOut.writeInt(forTurn);
+            packetOut.writeByte(proposeTurnTicks());
+            packetOut.writeInt(turn);
+            packetOut.writeLong(hash);
+            packetOut.writeShort(0);    // nº de órdenes: se pone al final
+            // El tick real lo pone quien la aplica: aquí va como diferencia 0.
+            // Las que no caben se quedan para el turno siguiente, en el mismo orden
+            while (sent < pending.size && sent < MAX_COMMANDS) {
+                Command c = pending.get(sent);
+                commandBytes.reset();
+                c.write(commandOut, c.tick);
+                if (packetBytes.size() + commandBytes.size() > MAX_PAYLOAD) break;
+                commandBytes.writeTo(packetBytes);
+                sent++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);    // en memoria: no pasa
+        }
+        if (sent > 0) pending.removeRange(0, sent - 1);
+        turnsSent++;
+
+        byte[] bytes = packetBytes.toByteArray();
+        bytes[HEADER_BYTES - 2] = (byte) (sent >>> 8);
+        bytes[HEADER_BYTES - 1] = (byte) sent;
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+        store(payload.duplicate());
+        client.sendTurn(payload);
+    }
+
+    // Turnos lo bastante largos para que el paquete llegue antes de hacer falta
+    private int proposeTurnTicks() {
+        long rtt = client.getRttNanos();
+        if (rtt < 0) return INITIAL_TURN_TICKS;
+        int ticks = (int) Math.ceil(rtt * LATENCY_MARGIN / 1e9 / tickSeconds / TURN_DELAY);
+        return Math.max(MIN_TURN_TICKS, Math.min(MAX_TURN_TICKS, ticks));
+    }
+
+    @Override
+    public void onTurn(ByteBuffer payload) {
+        ByteBuffer copy = ByteBuffer.allocate(payload.remaining());
+        copy.put(payload).flip();
+        store(copy);
+    }
+
+    private void store(ByteBuffer packet) {
+        if (packet.remaining() < HEADER_BYTES) return;
+        int player = packet.get(0);
+        int forTurn = packet.getInt(1);
+        // Fuera de la ventana pisaría la casilla de un turno aún pendiente
+        if (player < 0 || player >= players || forTurn < turn || forTurn >= turn + WINDOW) return;
+        packets[forTurn % WINDOW][player] = packet;
+        packetTurns[forTurn % WINDOW][player] = forTurn;
+    }
+
+    @Override
+    public void onPlayerLeft(int player) {
+        if (player >= 0 && player < players) left[player] = true;
+    }
+
+    /** El último {@link #advance(int)} se quedó esperando paquetes de otro jugador. */
+    public boolean isStalled() { return stalled; }
+    /** Primer turno cuya huella no coincidió con la de otro jugador, o -1. */
+    public int getDesyncTurn() { return desyncTurn; }
+    public int getDesyncPlayer() { return desyncPlayer; }
+    public boolean isDisconnected() { return client.isClosed(); }
+    public boolean hasLeft(int player) { return left[player]; }
+    /** Primer jugador descartado por mandar un paquete mal formado, o -1. */
+    public int getDroppedPlayer() { return droppedPlayer; }
+    /** Órdenes locales que aún esperan sitio en un paquete. */
+    public int getPendingCount() { return pending.size; }
+    public int getTurn() { return turn; }
+    public int getTurnTicks() { return turnTicks; }
+    public int getTurnsSent() { return turnsSent; }
+    public int getLocalPlayer() { return localPlayer; }
+    public int getPlayerCount() { return players; }
+    /** Latencia con el servidor en milisegundos, o -1 si aún no se ha medido. */
+    public float getRttMillis() {
+        long rtt = client.getRttNanos();
+        return rtt < 0 ? -1f : rtt / 1e6f;
+    }
+    public LockstepClient getClient() { return client; }
+    public GameWorld getWorld() { return world; }
+}
@@ -0,0 +1,37 @@
+package com.armymen.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mensajes entre clientes y servidor de la partida en red. Cada mensaje es
+ * [longitud int][tipo byte][datos], en big-endian. Por la red sólo viajan órdenes
+ * agrupadas por turno, nunca el estado de las unidades.
+ */
+final class Protocol {
+
+    static final int DEFAULT_PORT = 7777;
+    static final int MAX_FRAME = 64 * 1024;
+
+    static final byte HELLO = 1;     // s→c: jugador asignado (byte), jugadores esperados (byte)
+    static final byte START = 2;     // s→c: jugadores (byte); todos conectados
+    static final byte TURN = 3;      // c→s→c: órdenes de un jugador para un turno (ver LockstepSession)
+    static final byte PING = 4;      // c→s: nanoTime del cliente (long)
+    static final byte PONG = 5;      // s→c: el mismo long
+    static final byte LEFT = 6;      // s→c: jugador desconectado (byte)
+
+    private Protocol() {}
+
+    /** Buffer para un mensaje con sitio para {@code payloadBytes}; se cierra con {@link #end}. */
+    static ByteBuffer begin(byte type, int payloadBytes) {
+        ByteBuffer buf = ByteBuffer.allocate(5 + payloadBytes);
+        buf.putInt(0).put(type);
+        return buf;
+    }
+
+    /** Escribe la longitud y deja el buffer listo para enviar. */
+    static ByteBuffer end(ByteBuffer buf) {
+        buf.putInt(0, buf.position() - 4);
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,83 @@
+package com.armymen.screens;
+
+import com.armymen.systems.FogOfWar;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Niebla de guerra del jugador local dibujada como una textura de un byte por celda (alfa
+ * del negro: opaca sin explorar, a medias explorada, transparente visible) estirada sobre
+ * el mapa con filtro lineal, así los bordes salen suaves.
+ *
+ * Sólo se suben con glTexSubImage2D los bloques que {@link FogOfWar} marca como sucios:
+ * unidades quietas no cuestan nada y una que se mueve toca uno o dos bloques.
+ */
+class FogRenderer implements Disposable {
+
+    private static final byte UNEXPLORED_ALPHA = (byte) 255;
+    private static final byte EXPLORED_ALPHA = (byte) 140;
+    private static final byte VISIBLE_ALPHA = 0;
+
+    private final ByteBuffer upload = BufferUtils.newByteBuffer(FogOfWar.BLOCK * FogOfWar.BLOCK);
+    private FogOfWar fog;
+    private int player;
+    private Texture texture;
+    private int uploadedBlocks;
+
+    /** Cambia la niebla a dibujar; la textura se crea y se sube entera. */
+    void setFog(FogOfWar fog, int player) {
+        this.fog = fog;
+        this.player = player;
+        if (texture == null || texture.getWidth() != fog.getCols() || texture.getHeight() != fog.getRows()) {
+            if (texture != null) texture.dispose();
+            texture = new Texture(fog.getCols(), fog.getRows(), Pixmap.Format.Alpha);
+            texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        }
+        for (int b = 0; b < fog.getBlockCols() * fog.getBlockRows(); b++) uploadBlock(b);
+    }
+
+    /** Sube los bloques cambiados y dibuja la niebla sobre todo el mapa (dentro de batch.begin/end). */
+    void render(SpriteBatch batch) {
+        if (fog == null) return;
+        for (int b = fog.nextDirtyBlock(player, 0); b >= 0; b = fog.nextDirtyBlock(player, b + 1)) uploadBlock(b);
+        // v = 0 abajo: la fila 0 de la textura es la fila 0 de celdas (y hacia arriba)
+        float size = fog.getCellSize();
+        batch.draw(texture, 0f, 0f, fog.getCols() * size, fog.getRows() * size, 0f, 0f, 1f, 1f);
+    }
+
+    private void uploadBlock(int block) {
+        fog.clearDirtyBlock(player, block);
+        int x0 = (block % fog.getBlockCols()) * FogOfWar.BLOCK, y0 = (block / fog.getBlockCols()) * FogOfWar.BLOCK;
+        int w = Math.min(FogOfWar.BLOCK, fog.getCols() - x0), h = Math.min(FogOfWar.BLOCK, fog.getRows() - y0);
+        upload.clear();
+        for (int y = y0; y < y0 + h; y++) {
+            int row = y * fog.getCols();
+            for (int x = x0; x < x0 + w; x++) {
+                int cell = row + x;
+                upload.put(fog.isVisible(player, cell) ? VISIBLE_ALPHA
+                    : fog.isExplored(player, cell) ? EXPLORED_ALPHA : UNEXPLORED_ALPHA);
+            }
+        }
+        upload.flip();
+        texture.bind();
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, x0, y0, w, h, GL20.GL_ALPHA, GL20.GL_UNSIGNED_BYTE, upload);
+        uploadedBlocks++;
+    }
+
+    /** Bloques subidos a la GPU desde el principio. */
+    int getUploadedBlocks() { return uploadedBlocks; }
+
+    @Override
+    public void dispose() {
+        if (texture != null) texture.dispose();
+    }
+}
@@ -2,9 +2,23 @@ package com.armymen.screens;
 
 import com.armymen.MainGame;
 import com.armymen.entities.Building;
-import com.armymen.entities.Bulldozer;
 import com.armymen.entities.Unit;
+import com.armymen.net.LockstepClient;
+import com.armymen.net.LockstepSession;
+import com.armymen.simulation.Command;
+import com.armymen.simulation.CommandRecorder;
+import com.armymen.simulation.GameWorld;
+import com.armymen.simulation.WorldSnapshot;
+import com.armymen.systems.AssetManifest;
+import com.armymen.systems.ChunkStreamer;
+import com.armymen.systems.FixedTimestep;
+import com.armymen.systems.FogOfWar;
+import com.armymen.systems.FormationPlanner;
+import com.armymen.systems.FrameProfiler;
+import com.armymen.systems.PerfRecorder;
 import com.armymen.systems.ResourceManager;
+import com.armymen.systems.TerrainMap;
+import com.armymen.systems.TextureRegistry;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
@@ -14,12 +28,17 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.util.Comparator;
 
 // --- Scene2D UI ---
 import com.badlogic.gdx.scenes.scene2d.Stage;
@@ -40,22 +59,95 @@ public class GameScreen implements Screen {
     private SpriteBatch batch;
     private ShapeRenderer shape;
 
-    private Array<Unit> playerUnits;
+    // Tamaño máximo de SpriteBatch (índices de 16 bits): menos vaciados por tamaño con muchos sprites
+    private static final int BATCH_SIZE = 8191;
+
+    // === Estadísticas de dibujo (última pasada del mundo; las muestra el panel F3) ===
+    private int worldRenderCalls;
+    private int worldMaxSpritesInBatch;
+    private int visibleUnits, culledUnits;
+    private int visibleBuildings, culledBuildings;
+
+    // === Rendimiento: F3 muestra el panel, F5 graba un CSV por frame ===
+    private final FrameProfiler profiler = new FrameProfiler();
+    private final PerfRecorder recorder = new PerfRecorder();
+    private PerfOverlay perfOverlay;
+
+    // Suelo por trozos cacheados en la GPU (el tamaño del mapa sale del terreno del mundo)
+    private final TerrainRenderer terrainRenderer = new TerrainRenderer();
+    // Mapa en disco: trozos cargados en segundo plano alrededor de la cámara y de las unidades
+    private static final long STREAM_BUDGET_BYTES = 4L << 20;   // 8192 trozos
+    private static final int STREAM_UNITS_EVERY = 30;          // frames entre repasos de las unidades
+    private ChunkStreamer streamer;
+    private final Rectangle streamArea = new Rectangle();
+    private int streamFrame;
+
+    // Niebla de guerra del jugador local: tapa el mapa y esconde lo que no se ve
+    private final FogRenderer fogRenderer = new FogRenderer();
+
+    // === Recorte por cámara: sólo se dibuja lo que toca la vista (+ margen) ===
+    // El margen cubre medio sprite, el círculo de selección y la interpolación entre ticks
+    private static final float CULL_MARGIN = 64f;
+    private final Rectangle viewBounds = new Rectangle();
+    private final Array<Building> visibleBuildingList = new Array<>(false, 256);
+    private final Array<Unit> visibleUnitList = new Array<>(false, 1024);
+    // La rejilla devuelve las unidades por celdas: se ordenan por id para dibujar siempre igual
+    private static final Comparator<Unit> BY_ID = new Comparator<Unit>() {
+        @Override public int compare(Unit a, Unit b) { return Integer.compare(a.getId(), b.getId()); }
+    };
+
+    // === Mundo (estado + simulación, sin render) ===
+    private GameWorld world;
     private Array<Unit> selectedUnits;
-    private Array<Building> buildings;
-    private Bulldozer bulldozer;
-    private ResourceManager resourceManager;
+    private final ObjectSet<Unit> selectedSet = new ObjectSet<>();   // para saber en O(1) si ya está
+    private Building selectedBuilding;
+    private final Array<Unit> pickedUnits = new Array<>(false, 256);
+    private final IntArray selectedIds = new IntArray(false, 256);
+
+    // === Simulación a paso fijo (independiente de los FPS) ===
+    private static final float TICKS_PER_SECOND = 30f;
+    private static final int MAX_STEPS_PER_FRAME = 5;
+    private final FixedTimestep timestep = new FixedTimestep(TICKS_PER_SECOND, MAX_STEPS_PER_FRAME);
+    private static final int PATH_BUDGET_MICROS = 500;   // tiempo máximo de A* por tick
+
+    // Guardado rápido (F6) y carga (F9)
+    private static final String QUICK_SAVE = "saves/quick.sav";
+
+    // Grabación de órdenes para repetir la partida en headless (F7)
+    private final CommandRecorder commandRecorder = new CommandRecorder();
+
+    // Partida en red (null = un jugador). Hasta que conectan todos no hay sesión
+    private final LockstepClient lockstep;
+    private LockstepSession session;
+    private int localPlayer;
+    private String netStatus;          // último aviso de red mostrado, para no repetirlo
 
     // === Selección con arrastre ===
     private boolean selecting = false;
-    private Vector2 selectStart = new Vector2();
-    private Vector2 selectEnd = new Vector2();
+    private final Vector2 selectStart = new Vector2();
+    private final Vector2 selectEnd = new Vector2();
+    private final Rectangle selectRect = new Rectangle();
+    private static final float CLICK_SLOP = 4f;   // arrastre menor que esto = clic
+
+    // === Vista previa de construcción ===
+    private final Vector2 previewPos = new Vector2();
+
+    // Temporales de entrada (sin basura por frame)
+    private final Vector3 tmpScreen = new Vector3();
+    private final Vector2 tmpWorld = new Vector2();
 
     // === HUD / UI ===
     private Stage stage;
     private Skin skin;
-    private Label plasticLabel;
+    private HudCounter plasticLabel;
     private Label modeLabel;
+    private TextButton btnFormation;
+    private UiCache uiCache;           // la UI sólo se vuelve a dibujar cuando cambia
+    private final ResourceManager.Listener plasticListener = new ResourceManager.Listener() {
+        @Override public void onPlasticChanged(int plastic) {
+            if (plasticLabel.setValue(plastic)) uiCache.invalidate();
+        }
+    };
 
     // Modo simple de acción (evitamos tocar muchas cosas)
     private enum ActionMode { NONE, BUILD_STORAGE }
@@ -63,43 +155,42 @@ public class GameScreen implements Screen {
 
     public GameScreen(MainGame game) {
         this.game = game;
+        this.lockstep = game.getLockstep();
 
         // Cámara, batch, shapes
         this.camera = new OrthographicCamera();
         this.camera.setToOrtho(false, 1280, 720);
-        this.batch = new SpriteBatch();
+        this.batch = new SpriteBatch(BATCH_SIZE);
         this.shape = new ShapeRenderer();
 
+        // Todos los sprites del mundo en un único atlas (una sola textura → un solo flush).
+        // Normalmente FirstScreen ya los empaquetó y esto no hace nada
+        TextureRegistry.preload("soldier.png", "bulldozer.png", "building_storage.png");
+
         // Estado del juego
-        this.buildings = new Array<>();
-        this.playerUnits = new Array<>();
-        this.selectedUnits = new Array<>();
-        this.resourceManager = new ResourceManager(200); // plástico inicial
-
-        // Entidades base
-        bulldozer = new Bulldozer(new Vector2(500, 500));
-        playerUnits.add(bulldozer);
-
-        // Algunos soldados
-        playerUnits.add(new Unit(new Vector2(400, 300)));
-        playerUnits.add(new Unit(new Vector2(600, 350)));
-        playerUnits.add(new Unit(new Vector2(800, 300)));
-        playerUnits.add(new Unit(new Vector2(1000, 500)));
-        playerUnits.add(new Unit(new Vector2(1200, 250)));
-
-        // Un edificio de ejemplo
-        buildings.add(new Building(new Vector2(700, 400), "building_storage.png"));
-
-        // Listener de construcción del bulldozer
-        Bulldozer.setBuildListener(new Bulldozer.BuildListener() {
-            @Override
-            public void onBuildingCreated(Building building) {
-                buildings.add(building);
+        String mapError = null;
+        if (game.getMapFile() != null && lockstep == null) {
+            try {
+                this.world = GameWorld.fromMapFile(game.getMapFile(), 1);
+            } catch (GdxRuntimeException e) {
+                mapError = "No se pudo abrir el mapa: " + e.getMessage();
             }
-        });
+        }
+        if (this.world == null) this.world = GameWorld.createDefault(1, game.getMapSize());
+        this.world.getPathService().setBudgetMicros(PATH_BUDGET_MICROS);
+        this.selectedUnits = new Array<>();
+        terrainRenderer.setMap(world.getTerrain());
+        attachStreamer();
+        fogRenderer.setFog(world.getFog(), localPlayer);
 
         // === UI ===
         createUI();
+        uiCache = new UiCache(stage);
+        perfOverlay = new PerfOverlay(profiler);
+        world.setProfiler(profiler);
+        world.getResources(localPlayer).addListener(plasticListener);
+        if (lockstep != null) setMode("Esperando jugadores...");
+        else if (mapError != null) setMode(mapError);
 
         // Multiplexor de input: primero UI, luego juego
         InputMultiplexer mux = new InputMultiplexer(stage, new com.badlogic.gdx.InputAdapter(){});
@@ -114,11 +205,8 @@ public class GameScreen implements Screen {
 
         // Asegúrate de tener este skin en assets: uiskin.json + uiskin.png
         // Puedes usar el skin por defecto de LibGDX: https://github.com/czyzby/gdx-skins/tree/master/uiskin
-        // donde creas el Skin:
-        skin = new Skin(
-            Gdx.files.internal("uiskin.json"),
-            new TextureAtlas(Gdx.files.internal("uiskin.atlas"))
-        );
+        // Lo cargó FirstScreen con el AssetManager (que también lo libera)
+        skin = game.getAssets().get(AssetManifest.SKIN, Skin.class);
 
 
         Table root = new Table();
@@ -138,7 +226,7 @@ public class GameScreen implements Screen {
         btnBuildStorage.addListener(new ClickListener() {
             @Override public void clicked(InputEvent event, float x, float y) {
                 actionMode = ActionMode.BUILD_STORAGE;
-                modeLabel.setText("Modo: Construir Almacén (clic IZQ. en el mapa)");
+                setMode("Modo: Construir Almacén (clic IZQ. en el mapa)");
             }
         });
         left.add(btnBuildStorage).row();
@@ -151,16 +239,28 @@ public class GameScreen implements Screen {
         btnCancel.addListener(new ClickListener() {
             @Override public void clicked(InputEvent event, float x, float y) {
                 actionMode = ActionMode.NONE;
-                modeLabel.setText("Modo: Ninguno");
+                setMode("Modo: Ninguno");
             }
         });
         left.add(btnCancel).row();
 
+        // Botón: cambiar la formación de los grupos (caja → línea → cuña)
+        btnFormation = new TextButton(formationText(world.getFormation(localPlayer)), skin);
+        btnFormation.addListener(new ClickListener() {
+            @Override public void clicked(InputEvent event, float x, float y) {
+                FormationPlanner.Shape[] shapes = FormationPlanner.Shape.values();
+                FormationPlanner.Shape next = shapes[(world.getFormation(localPlayer).ordinal() + 1) % shapes.length];
+                issue(Command.formation(world.getTick(), localPlayer, next));
+                btnFormation.setText(formationText(next));
+            }
+        });
+        left.add(btnFormation).row();
+
         // Panel superior derecho: indicadores
         Table top = new Table(skin);
         top.defaults().pad(6);
 
-        plasticLabel = new Label("Plástico: 0", skin);
+        plasticLabel = new HudCounter("Plástico: ", skin);
         modeLabel = new Label("Modo: Ninguno", skin);
 
         // Layout general: left a la izquierda, top arriba-derecha
@@ -177,20 +277,69 @@ public class GameScreen implements Screen {
         root.add(rightCol).top().right().pad(8);
     }
 
+    /** Cambia el texto de modo y pide redibujar la UI. */
+    private void setMode(String text) {
+        modeLabel.setText(text);
+        uiCache.invalidate();
+    }
+
+    private static String formationText(FormationPlanner.Shape shape) {
+        switch (shape) {
+            case LINE: return "Formación: Línea";
+            case WEDGE: return "Formación: Cuña";
+            default: return "Formación: Caja";
+        }
+    }
+
     @Override
     public void render(float delta) {
-        update(delta);
+        handlePerfKeys();
+        handleSaveKeys();
+        profiler.beginFrame();
+
+        // Cámara, entrada y HUD van al ritmo de los frames; la simulación a ticks fijos
+        profiler.begin(FrameProfiler.CAMERA);
+        handleCamera(delta);
+        profiler.end(FrameProfiler.CAMERA);
+        profiler.begin(FrameProfiler.INPUT);
+        handleInput();
+        profiler.end(FrameProfiler.INPUT);
+        profiler.begin(FrameProfiler.SIMULATION);
+        int steps = timestep.advance(delta);
+        if (lockstep != null) updateNetwork(steps);
+        else for (int i = 0; i < steps; i++) world.step(timestep.getStep());
+        float alpha = timestep.getAlpha();
+        profiler.end(FrameProfiler.SIMULATION);
 
         // Fondo
         Gdx.gl.glClearColor(1, 1, 1, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+        // Suelo: sólo los trozos que toca la cámara
+        profiler.begin(FrameProfiler.TERRAIN);
+        if (streamer != null) streamTerrain();
+        terrainRenderer.render(camera);
+        profiler.end(FrameProfiler.TERRAIN);
+
+        // Qué entra en cámara
+        profiler.begin(FrameProfiler.CULLING);
+        cullWorld();
+        profiler.end(FrameProfiler.CULLING);
+
         // Dibujo del mundo
+        profiler.begin(FrameProfiler.WORLD_DRAW);
         batch.setProjectionMatrix(camera.combined);
+        // begin() pone renderCalls a cero pero no el máximo: sin esto sería el de toda la partida
+        batch.maxSpritesInBatch = 0;
         batch.begin();
-        for (Building b : buildings) b.render(batch);
-        for (Unit u : playerUnits) u.render(batch);
+        for (int i = 0; i < visibleBuildingList.size; i++) visibleBuildingList.get(i).render(batch);
+        for (int i = 0; i < visibleUnitList.size; i++) visibleUnitList.get(i).render(batch, alpha);
+        fogRenderer.render(batch);
         batch.end();
+        worldRenderCalls = batch.renderCalls;
+        worldMaxSpritesInBatch = batch.maxSpritesInBatch;
+        profiler.end(FrameProfiler.WORLD_DRAW);
+        profiler.begin(FrameProfiler.SHAPES);
 
         // Rectángulo de selección (mientras arrastras)
         if (selecting) {
@@ -202,37 +351,248 @@ public class GameScreen implements Screen {
             shape.end();
         }
 
+        // Vista previa del edificio bajo el cursor: verde si cabe, rojo si no
+        if (actionMode == ActionMode.BUILD_STORAGE) drawPlacementPreview();
+
         // Resaltar seleccionados
         shape.setProjectionMatrix(camera.combined);
         shape.begin(ShapeRenderer.ShapeType.Line);
         shape.setColor(Color.RED);
-        for (Unit u : selectedUnits)
-            shape.circle(u.getPosition().x, u.getPosition().y, 25);
+        for (int i = 0; i < selectedUnits.size; i++) {
+            Unit u = selectedUnits.get(i);
+            float x = u.getRenderX(alpha), y = u.getRenderY(alpha);
+            if (viewBounds.contains(x, y)) shape.circle(x, y, 25);
+        }
+        if (selectedBuilding != null) {
+            Rectangle r = selectedBuilding.getBounds();
+            shape.rect(r.x, r.y, r.width, r.height);
+        }
         shape.end();
+        profiler.end(FrameProfiler.SHAPES);
 
         // UI
+        profiler.begin(FrameProfiler.UI);
         stage.act(delta);
-        stage.draw();
+        uiCache.draw();
+        profiler.end(FrameProfiler.UI);
+
+        // Rendimiento (las cuentas de GL no incluyen el propio panel)
+        profiler.endFrame();
+        perfOverlay.collectFrame(delta);
+        recorder.record(profiler, perfOverlay.getDrawCalls(), perfOverlay.getTextureBinds(),
+            world.getUnits().size, visibleUnits, world.getBuildings().size);
+        perfOverlay.setScene(terrainRenderer, fogRenderer, world, streamer);
+        perfOverlay.setWorldBatch(worldRenderCalls, worldMaxSpritesInBatch);
+        perfOverlay.setCulling(culledUnits, visibleBuildings, culledBuildings);
+        perfOverlay.draw(delta, world.getUnits().size, visibleUnits, world.getBuildings().size, uiCache.getRedraws());
     }
 
-    private void update(float delta) {
-        handleCamera(delta);
-        handleInput();
+    private void handlePerfKeys() {
+        boolean changed = false;
+        boolean overlay = perfOverlay.isVisible();
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+            overlay = !overlay;
+            changed = true;
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F5)) {
+            if (recorder.isRecording()) {
+                setMode("Perfil guardado: " + recorder.stop().path());
+            } else {
+                recorder.start(Gdx.files.local("perf/perf-" + TimeUtils.millis() + ".csv"));
+                setMode("Grabando perfil (F5 para parar)");
+            }
+            changed = true;
+        }
+        if (changed) perfOverlay.setActive(overlay, recorder.isRecording());
+    }
 
-        for (Unit u : playerUnits) u.update(delta);
+    /**
+     * Aplica una orden al mundo y, si se está grabando, la añade a la grabación.
+     * En red la orden se envía y se aplica a la vez en todos los clientes unos ticks después.
+     */
+    private void issue(Command command) {
+        if (lockstep != null) {
+            if (session != null) session.issue(command);
+            return;
+        }
+        world.execute(command);
+        commandRecorder.record(command);
+    }
+
+    /** Partida en red: espera a que estén todos y luego simula al ritmo de los turnos. */
+    private void updateNetwork(int steps) {
+        if (session == null) {
+            lockstep.poll();
+            if (lockstep.isClosed()) {
+                showNetStatus("Sin conexión con el servidor");
+            } else if (lockstep.isStarted()) {
+                replaceWorld(GameWorld.createDefault(lockstep.getPlayerCount()), lockstep.getLocalPlayer());
+                session = new LockstepSession(world, lockstep, timestep.getStep());
+                showNetStatus("Partida en red: jugador " + (localPlayer + 1) + " de " + lockstep.getPlayerCount());
+            }
+            return;
+        }
 
-        // Evitar atravesar edificios (empujón suave)
-        for (Unit u : playerUnits) {
-            for (Building b : buildings) {
-                if (b.getBounds().contains(u.getPosition())) {
-                    Vector2 dir = new Vector2(u.getPosition()).sub(b.getPosition()).nor();
-                    u.getPosition().mulAdd(dir, 3f); // retrocede un poco
+        session.advance(steps);
+        if (session.getDesyncTurn() >= 0) {
+            showNetStatus("¡Desincronizado con el jugador " + (session.getDesyncPlayer() + 1)
+                + " en el turno " + session.getDesyncTurn() + "!");
+        } else if (session.isDisconnected()) {
+            showNetStatus("Conexión perdida");
+        } else if (session.isStalled()) {
+            showNetStatus("Esperando a otros jugadores...");
+        } else if (session.getDroppedPlayer() >= 0) {
+            showNetStatus("El jugador " + (session.getDroppedPlayer() + 1) + " envió datos no válidos y se le ignora");
+        } else if (netStatus != null && netStatus.startsWith("Esperando")) {
+            showNetStatus("Partida en red: jugador " + (localPlayer + 1) + " de " + session.getPlayerCount());
+        }
+    }
+
+    private void showNetStatus(String text) {
+        if (text.equals(netStatus)) return;
+        netStatus = text;
+        setMode(text);
+    }
+
+    private void handleSaveKeys() {
+        // En red el mundo es de todos: ni grabar ni cargar
+        if (lockstep != null) return;
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F7)) {
+            if (commandRecorder.isRecording()) {
+                stopCommandRecording();
+            } else {
+                try {
+                    String file = "replays/replay-" + TimeUtils.millis() + ".amr";
+                    replaceWorld(commandRecorder.start(world, Gdx.files.local(file).file().toPath(), timestep.getStep()), localPlayer);
+                    setMode("Grabando órdenes (F7 para parar)");
+                } catch (GdxRuntimeException e) {
+                    setMode("No se pudo grabar: " + e.getMessage());
                 }
             }
         }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F6)) {
+            try {
+                long start = TimeUtils.nanoTime();
+                WorldSnapshot.save(world, Gdx.files.local(QUICK_SAVE).file().toPath());
+                setMode("Partida guardada (" + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start)) + " ms)");
+            } catch (GdxRuntimeException e) {
+                setMode("No se pudo guardar: " + e.getMessage());
+            }
+        }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F9)) {
+            if (!Gdx.files.local(QUICK_SAVE).exists()) {
+                setMode("No hay partida guardada (F6)");
+                return;
+            }
+            stopCommandRecording();
+            try {
+                long start = TimeUtils.nanoTime();
+                replaceWorld(WorldSnapshot.load(Gdx.files.local(QUICK_SAVE).file().toPath()), localPlayer);
+                setMode("Partida cargada (" + TimeUtils.nanosToMillis(TimeUtils.timeSinceNanos(start)) + " ms)");
+            } catch (GdxRuntimeException e) {
+                setMode("No se pudo cargar: " + e.getMessage());
+            }
+        }
+    }
+
+    private void stopCommandRecording() {
+        if (!commandRecorder.isRecording()) return;
+        int count = commandRecorder.getCommandCount();
+        setMode("Grabación guardada: " + commandRecorder.stop(world).getFileName() + " (" + count + " órdenes)");
+        world.getPathService().setBudgetMicros(PATH_BUDGET_MICROS);
+    }
+
+    /** Cambia el mundo por uno cargado: suelta el anterior y engancha el nuevo a la pantalla. */
+    private void replaceWorld(GameWorld next, int player) {
+        world.getResources(localPlayer).removeListener(plasticListener);
+        world.setProfiler(null);
+        if (streamer != null) streamer.dispose();
+        streamer = null;
+        world.dispose();
+
+        world = next;
+        localPlayer = player;
+        // Grabando o en red, A* se reparte por nodos y no por tiempo: así todos calculan lo mismo
+        boolean deterministic = commandRecorder.isRecording() || lockstep != null;
+        world.getPathService().setBudgetMicros(deterministic ? 0 : PATH_BUDGET_MICROS);
+        world.setProfiler(profiler);
+        world.getResources(localPlayer).addListener(plasticListener);
+        terrainRenderer.setMap(world.getTerrain());
+        attachStreamer();
+        fogRenderer.setFog(world.getFog(), localPlayer);
+        plasticListener.onPlasticChanged(world.getResources(localPlayer).getPlastic());
+
+        selectedUnits.clear();
+        selectedSet.clear();
+        selectedBuilding = null;
+        actionMode = ActionMode.NONE;
+        btnFormation.setText(formationText(world.getFormation(localPlayer)));
+    }
+
+    // Si el terreno del mundo viene de un fichero, un cargador nuevo para él
+    private void attachStreamer() {
+        if (streamer != null) streamer.dispose();
+        streamer = world.getTerrain().isStreamed() ? new ChunkStreamer(world.getTerrain(), STREAM_BUDGET_BYTES) : null;
+    }
 
-        // Actualizar HUD
-        plasticLabel.setText("Plástico: " + resourceManager.getPlastic());
+    /**
+     * Pide los trozos de la vista (con un trozo de margen, para que el paneo llegue con
+     * ellos ya cargados) y de vez en cuando los de las unidades en marcha, e instala lo que
+     * ya se haya leído. Nunca espera al disco: lo que falta se dibuja en cuanto llegue.
+     */
+    private void streamTerrain() {
+        float margin = TerrainMap.CHUNK_TILES * world.getTerrain().getTileSize();
+        float w = camera.viewportWidth * camera.zoom, h = camera.viewportHeight * camera.zoom;
+        streamArea.set(camera.position.x - w / 2f - margin, camera.position.y - h / 2f - margin,
+            w + 2 * margin, h + 2 * margin);
+        streamer.requestArea(streamArea, true);
+        if (streamFrame++ % STREAM_UNITS_EVERY == 0) streamer.requestAroundUnits(world.getUnitStore());
+        streamer.update();
+    }
+
+    /** Huella alineada a la rejilla donde quedaría el almacén. Son unas pocas pruebas de bit por frame. */
+    private void drawPlacementPreview() {
+        Vector2 mouse = screenToWorld(Gdx.input.getX(), Gdx.input.getY());
+        world.snapBuildPosition(mouse.x, mouse.y, previewPos);
+        Rectangle area = world.footprintAt(previewPos.x, previewPos.y);
+        boolean free = world.getOccupancy().isAreaFree(area);
+
+        shape.setProjectionMatrix(camera.combined);
+        shape.begin(ShapeRenderer.ShapeType.Line);
+        shape.setColor(free ? Color.GREEN : Color.RED);
+        shape.rect(area.x, area.y, area.width, area.height);
+        shape.end();
+    }
+
+    /** Rellena las listas visibles con lo que toca el rectángulo de la cámara más el margen. */
+    private void cullWorld() {
+        float w = camera.viewportWidth * camera.zoom, h = camera.viewportHeight * camera.zoom;
+        viewBounds.set(camera.position.x - w / 2f - CULL_MARGIN, camera.position.y - h / 2f - CULL_MARGIN,
+            w + 2 * CULL_MARGIN, h + 2 * CULL_MARGIN);
+
+        visibleBuildingList.clear();
+        visibleUnitList.clear();
+        world.queryVisible(viewBounds, visibleBuildingList, visibleUnitList);
+        hideFogged();
+        visibleUnitList.sort(BY_ID);
+
+        visibleBuildings = visibleBuildingList.size;
+        culledBuildings = world.getBuildings().size - visibleBuildings;
+        visibleUnits = visibleUnitList.size;
+        culledUnits = world.getUnits().size - visibleUnits;
+    }
+
+    // Bajo la niebla no se dibuja nada ajeno: unidades de otros fuera de la vista y edificios sin explorar
+    private void hideFogged() {
+        FogOfWar fog = world.getFog();
+        for (int i = visibleUnitList.size - 1; i >= 0; i--) {
+            Unit u = visibleUnitList.get(i);
+            if (u.getOwner() != localPlayer && !fog.isVisible(localPlayer, u.getX(), u.getY())) visibleUnitList.removeIndex(i);
+        }
+        for (int i = visibleBuildingList.size - 1; i >= 0; i--) {
+            Rectangle r = visibleBuildingList.get(i).getBounds();
+            if (!fog.isExplored(localPlayer, r.x + r.width / 2f, r.y + r.height / 2f)) visibleBuildingList.removeIndex(i);
+        }
     }
 
     // -------------------------------------------------------------------------------------
@@ -250,27 +610,30 @@ public class GameScreen implements Screen {
 
         // === Clic izquierdo: selección O confirmar acción de construcción ===
         if (Gdx.input.isButtonJustPressed(Input.Buttons.LEFT)) {
-            Vector2 world = screenToWorld(Gdx.input.getX(), Gdx.input.getY());
+            Vector2 clicked = screenToWorld(Gdx.input.getX(), Gdx.input.getY());
 
             if (actionMode == ActionMode.BUILD_STORAGE) {
-                // Construcción directa: no requiere tener seleccionado el bulldozer
-                boolean spaceFree = true;
-                for (Building b : buildings) {
-                    if (b.getBounds().contains(world)) { spaceFree = false; break; }
+                issue(Command.build(world.getTick(), localPlayer, clicked.x, clicked.y));
+                if (lockstep != null) {
+                    // El resultado se sabrá cuando la orden llegue a todos
+                    setMode("Orden de obra enviada");
+                    actionMode = ActionMode.NONE;
+                    return;
                 }
-
-                if (!spaceFree) {
-                    modeLabel.setText("Espacio ocupado. Elige otro lugar.");
+                GameWorld.BuildResult result = world.getLastBuildResult();
+                if (result == GameWorld.BuildResult.OCCUPIED) {
+                    setMode("Espacio ocupado. Elige otro lugar.");
+                    return;
+                }
+                if (result == GameWorld.BuildResult.BUSY) {
+                    setMode("El bulldozer ya tiene una obra.");
                     return;
                 }
 
-                // Coste fijo: 50 (como ya usas en tu right-click)
-                if (resourceManager.spend(50)) {
-                    // Ordenar al bulldozer que vaya a construir
-                    bulldozer.orderBuild(world);
-                    modeLabel.setText("Construyendo... (Bulldozer en camino)");
+                if (result == GameWorld.BuildResult.STARTED) {
+                    setMode("Construyendo... (Bulldozer en camino)");
                 } else {
-                    modeLabel.setText("Plástico insuficiente (50).");
+                    setMode("Plástico insuficiente (" + GameWorld.STORAGE_COST + ").");
                 }
 
                 // Tras click, salimos del modo construcción
@@ -279,38 +642,93 @@ public class GameScreen implements Screen {
             }
 
             // Si NO estamos en modo de construcción → iniciar selección por arrastre
-            selectStart = world;
+            selectStart.set(clicked);
+            selectEnd.set(clicked);
             selecting = true;
         }
 
         // Arrastre
         if (selecting) {
-            selectEnd = screenToWorld(Gdx.input.getX(), Gdx.input.getY());
+            selectEnd.set(screenToWorld(Gdx.input.getX(), Gdx.input.getY()));
         }
 
-        // Soltar clic izquierdo → cerrar selección
+        // Soltar clic izquierdo → cerrar selección (clic corto = elegir lo que hay debajo)
         if (!Gdx.input.isButtonPressed(Input.Buttons.LEFT) && selecting) {
             selecting = false;
-            selectedUnits.clear();
-            Rectangle selection = getSelectionRectangle();
-            for (Unit u : playerUnits) {
-                if (selection.contains(u.getPosition()))
-                    selectedUnits.add(u);
-            }
+            finishSelection();
         }
 
         // === Clic derecho: mover unidades (formación) ===
         if (Gdx.input.isButtonJustPressed(Input.Buttons.RIGHT)) {
             if (selectedUnits.size > 0) {
                 Vector2 dest = screenToWorld(Gdx.input.getX(), Gdx.input.getY());
-                int i = 0;
-                for (Unit u : selectedUnits) {
-                    Vector2 offset = new Vector2((i % 3) * 40 - 40, (i / 3) * 40 - 40);
-                    u.setTarget(dest.cpy().add(offset));
-                    i++;
+                issue(Command.move(world.getTick(), localPlayer, dest.x, dest.y));
+            }
+        }
+    }
+
+    /**
+     * Aplica la selección al soltar: sin modificador la reemplaza, con Mayús añade
+     * y con Ctrl alterna. Todas las consultas van por la rejilla espacial del mundo.
+     */
+    private void finishSelection() {
+        boolean add = Gdx.input.isKeyPressed(Input.Keys.SHIFT_LEFT) || Gdx.input.isKeyPressed(Input.Keys.SHIFT_RIGHT);
+        boolean toggle = Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT) || Gdx.input.isKeyPressed(Input.Keys.CONTROL_RIGHT);
+
+        pickedUnits.clear();
+        Building pickedBuilding = null;
+        if (selectStart.dst2(selectEnd) < CLICK_SLOP * CLICK_SLOP) {
+            Unit u = world.pickUnit(selectEnd.x, selectEnd.y);
+            if (u != null) pickedUnits.add(u);
+            else pickedBuilding = world.pickBuilding(selectEnd.x, selectEnd.y);
+        } else {
+            world.selectInRect(getSelectionRectangle(), pickedUnits);
+        }
+        // Sólo se seleccionan unidades propias (en un jugador lo son todas)
+        for (int i = pickedUnits.size - 1; i >= 0; i--) {
+            if (pickedUnits.get(i).getOwner() != localPlayer) pickedUnits.removeIndex(i);
+        }
+
+        if (!add && !toggle) {
+            selectedUnits.clear();
+            selectedSet.clear();
+            selectedBuilding = pickedBuilding;
+        } else if (pickedBuilding != null) {
+            selectedBuilding = toggle && selectedBuilding == pickedBuilding ? null : pickedBuilding;
+        }
+
+        if (toggle) {
+            // Quitar los que ya estaban y añadir el resto; luego compactar la lista en O(n)
+            boolean removed = false;
+            for (int i = 0; i < pickedUnits.size; i++) {
+                Unit u = pickedUnits.get(i);
+                if (selectedSet.remove(u)) removed = true;
+                else {
+                    selectedSet.add(u);
+                    selectedUnits.add(u);
                 }
             }
+            if (removed) {
+                int keep = 0;
+                for (int i = 0; i < selectedUnits.size; i++) {
+                    Unit u = selectedUnits.get(i);
+                    if (selectedSet.contains(u)) selectedUnits.set(keep++, u);
+                }
+                selectedUnits.truncate(keep);
+            }
+        } else {
+            for (int i = 0; i < pickedUnits.size; i++) {
+                Unit u = pickedUnits.get(i);
+                if (selectedSet.add(u)) selectedUnits.add(u);
+            }
         }
+
+        // El grupo de las próximas órdenes de movimiento también es una orden, pero sólo hace
+        // falta crearla si se graba o se juega en red; si no, va directa al mundo sin basura
+        selectedIds.clear();
+        for (int i = 0; i < selectedUnits.size; i++) selectedIds.add(selectedUnits.get(i).getId());
+        if (lockstep == null && !commandRecorder.isRecording()) world.select(localPlayer, selectedIds.items, selectedIds.size, false);
+        else issue(Command.select(world.getTick(), localPlayer, selectedIds));
     }
 
     private void handleCamera(float delta) {
@@ -321,13 +739,13 @@ public class GameScreen implements Screen {
         if (Gdx.input.isKeyPressed(Input.Keys.D) || Gdx.input.isKeyPressed(Input.Keys.RIGHT)) camera.position.x += speed;
 
         // Límites del mapa
-        float MAP_WIDTH = 2000, MAP_HEIGHT = 2000;
         float halfW = camera.viewportWidth / 2f, halfH = camera.viewportHeight / 2f;
 
         if (camera.position.x < halfW) camera.position.x = halfW;
         if (camera.position.y < halfH) camera.position.y = halfH;
-        if (camera.position.x > MAP_WIDTH - halfW) camera.position.x = MAP_WIDTH - halfW;
-        if (camera.position.y > MAP_HEIGHT - halfH) camera.position.y = MAP_HEIGHT - halfH;
+        float mapWidth = world.getMapWidth(), mapHeight = world.getMapHeight();
+        if (camera.position.x > mapWidth - halfW) camera.position.x = mapWidth - halfW;
+        if (camera.position.y > mapHeight - halfH) camera.position.y = mapHeight - halfH;
 
         camera.update();
     }
@@ -337,18 +755,19 @@ public class GameScreen implements Screen {
         float y = Math.min(selectStart.y, selectEnd.y);
         float w = Math.abs(selectStart.x - selectEnd.x);
         float h = Math.abs(selectStart.y - selectEnd.y);
-        return new Rectangle(x, y, w, h);
+        return selectRect.set(x, y, w, h);
     }
 
+    /** Devuelve un vector reutilizado: copiarlo si hay que guardarlo. */
     private Vector2 screenToWorld(int x, int y) {
-        Vector3 tmp = new Vector3(x, y, 0);
-        camera.unproject(tmp);
-        return new Vector2(tmp.x, tmp.y);
+        camera.unproject(tmpScreen.set(x, y, 0));
+        return tmpWorld.set(tmpScreen.x, tmpScreen.y);
     }
 
     @Override public void resize(int w, int h) {
         camera.setToOrtho(false, w, h);
         stage.getViewport().update(w, h, true);
+        if (w > 0 && h > 0) uiCache.resize(Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
     }
 
     @Override public void show() {}
@@ -358,8 +777,21 @@ public class GameScreen implements Screen {
 
     @Override
     public void dispose() {
+        commandRecorder.stop(world);
+        if (streamer != null) streamer.dispose();
+        // Las entidades devuelven sus texturas; el registro libera lo que quede
+        world.dispose();
+        TextureRegistry.disposeAll();
+
         batch.dispose();
         shape.dispose();
+        terrainRenderer.dispose();
+        fogRenderer.dispose();
+        world.getResources(localPlayer).removeListener(plasticListener);
+        uiCache.dispose();
+        recorder.stop();
+        perfOverlay.dispose();
         stage.dispose();
+        // El skin es del AssetManager: lo libera MainGame
     }
 }
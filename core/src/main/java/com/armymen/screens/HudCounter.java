@@ -0,0 +1,32 @@
+package com.armymen.screens;
+
+import com.badlogic.gdx.scenes.scene2d.ui.Label;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/**
+ * Etiqueta del HUD de la forma "prefijo + número". Sólo rehace el texto (y el
+ * layout de glifos) cuando el número cambia, y lo compone en un StringBuilder
+ * reutilizado: en estado estable no cuesta nada ni genera basura.
+ */
+class HudCounter extends Label {
+
+    private final String prefix;
+    private final StringBuilder text = new StringBuilder(32);
+    private int value = Integer.MIN_VALUE;
+
+    HudCounter(String prefix, Skin skin) {
+        super(prefix, skin);
+        this.prefix = prefix;
+    }
+
+    /** Devuelve true si el texto cambió (hay que volver a dibujar la UI). */
+    boolean setValue(int newValue) {
+        if (newValue == value) return false;
+        value = newValue;
+        text.setLength(0);
+        text.append(prefix).append(newValue);
+        setText(text);
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package com.armymen.screens;
+
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.ChunkStreamer;
+import com.armymen.systems.FrameProfiler;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Panel de rendimiento (F3): percentiles de frame, tiempo por sistema, draw calls y
+ * cambios de textura de {@link GLProfiler}, entidades, suelo, niebla, carga de trozos,
+ * caminos y ritmo de reservas de memoria.
+ * El texto se rehace cuatro veces por segundo en un StringBuilder reutilizado.
+ */
+class PerfOverlay implements Disposable {
+
+    private static final float REFRESH = 0.25f;
+
+    private final FrameProfiler profiler;
+    private final GLProfiler glProfiler;
+    private final SpriteBatch batch = new SpriteBatch(256);
+    private final BitmapFont font = new BitmapFont();
+    private final StringBuilder text = new StringBuilder(1024);
+    private boolean visible;
+    private float sinceRefresh = REFRESH;
+
+    // Contadores de GL del último frame (se leen antes de dibujar el propio panel)
+    private int drawCalls, textureBinds;
+    private long allocWindowBytes;
+    private float allocWindowTime;
+    private float allocRateMb;
+
+    // De dónde sale el resto de contadores (cambian al cargar partida)
+    private TerrainRenderer terrain;
+    private FogRenderer fog;
+    private GameWorld world;
+    private ChunkStreamer streamer;
+    private int worldRenderCalls, worldMaxSprites;
+    private int culledUnits, visibleBuildings, culledBuildings;
+
+    PerfOverlay(FrameProfiler profiler) {
+        this.profiler = profiler;
+        this.glProfiler = new GLProfiler(Gdx.graphics);
+    }
+
+    boolean isVisible() { return visible; }
+
+    /** Con el panel visible o grabando hace falta medir; si no, todo queda apagado. */
+    void setActive(boolean overlayVisible, boolean recording) {
+        this.visible = overlayVisible;
+        boolean on = overlayVisible || recording;
+        if (on == profiler.isEnabled()) return;
+        profiler.setEnabled(on);
+        if (on) glProfiler.enable();
+        else glProfiler.disable();
+    }
+
+    /** Cierra las cuentas de GL del frame. Llamar después de dibujar el juego y la UI. */
+    void collectFrame(float delta) {
+        if (!profiler.isEnabled()) return;
+        drawCalls = glProfiler.getDrawCalls();
+        textureBinds = glProfiler.getTextureBindings();
+        glProfiler.reset();
+
+        long bytes = profiler.getAllocatedBytes();
+        if (bytes >= 0) {
+            allocWindowBytes += bytes;
+            allocWindowTime += delta;
+            if (allocWindowTime >= 1f) {
+                allocRateMb = allocWindowBytes / (1024f * 1024f) / allocWindowTime;
+                allocWindowBytes = 0;
+                allocWindowTime = 0f;
+            }
+        }
+    }
+
+    /** Suelo, niebla, mundo y cargador (puede ser null) del frame. */
+    void setScene(TerrainRenderer terrain, FogRenderer fog, GameWorld world, ChunkStreamer streamer) {
+        this.terrain = terrain;
+        this.fog = fog;
+        this.world = world;
+        this.streamer = streamer;
+    }
+
+    /** Vaciados del SpriteBatch y máximo de sprites en uno, sólo en la última pasada del mundo. */
+    void setWorldBatch(int renderCalls, int maxSprites) {
+        this.worldRenderCalls = renderCalls;
+        this.worldMaxSprites = maxSprites;
+    }
+
+    /** Lo que el recorte por cámara dejó fuera (y los edificios dibujados) en el último frame. */
+    void setCulling(int culledUnits, int visibleBuildings, int culledBuildings) {
+        this.culledUnits = culledUnits;
+        this.visibleBuildings = visibleBuildings;
+        this.culledBuildings = culledBuildings;
+    }
+
+    int getDrawCalls() { return drawCalls; }
+    int getTextureBinds() { return textureBinds; }
+
+    void draw(float delta, int units, int visibleUnits, int buildings, int uiRedraws) {
+        if (!visible) return;
+        sinceRefresh += delta;
+        if (sinceRefresh >= REFRESH) {
+            sinceRefresh = 0f;
+            rebuildText(units, visibleUnits, buildings, uiRedraws);
+        }
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        batch.begin();
+        font.setColor(Color.BLACK);
+        font.draw(batch, text, Gdx.graphics.getWidth() - 300f, Gdx.graphics.getHeight() - 80f);
+        batch.end();
+    }
+
+    private void rebuildText(int units, int visibleUnits, int buildings, int uiRedraws) {
+        text.setLength(0);
+        text.append("FPS ").append(Gdx.graphics.getFramesPerSecond()).append('\n');
+        text.append("frame ms p50 ").append(ms(profiler.percentile(0.5f)))
+            .append("  p95 ").append(ms(profiler.percentile(0.95f)))
+            .append("  p99 ").append(ms(profiler.percentile(0.99f))).append('\n');
+        text.append("cpu ms ").append(ms(profiler.getCpuNanos() / 1e6f)).append('\n');
+        for (int s = 0; s < FrameProfiler.SECTIONS; s++) {
+            text.append("  ").append(FrameProfiler.getName(s)).append(' ')
+                .append(ms(profiler.getSectionNanos(s) / 1e6f)).append('\n');
+        }
+        text.append("draw calls ").append(drawCalls).append("  binds ").append(textureBinds).append('\n');
+        text.append("mundo vaciados ").append(worldRenderCalls)
+            .append("  máx sprites ").append(worldMaxSprites).append('\n');
+        text.append("unidades ").append(visibleUnits).append('/').append(units)
+            .append(" (fuera ").append(culledUnits).append(')')
+            .append("  edificios ").append(visibleBuildings).append('/').append(buildings)
+            .append(" (fuera ").append(culledBuildings).append(')').append('\n');
+        if (terrain != null) {
+            text.append("suelo trozos ").append(terrain.getDrawnChunks())
+                .append("  hechos ").append(terrain.getBuiltChunks())
+                .append("  niebla bloques ").append(fog.getUploadedBlocks()).append('\n');
+        }
+        if (streamer != null) {
+            text.append("carga residentes ").append(streamer.getResident()).append('/').append(streamer.getBudgetChunks())
+                .append("  en cola ").append(streamer.getPending())
+                .append("  faltan ").append(streamer.getMissing())
+                .append("  sin array ").append(streamer.getSkippedTotal()).append('\n');
+        }
+        if (world != null) {
+            text.append("caminos ").append(world.getPathService().getSearchCount())
+                .append("  memo ").append(world.getPathService().getMemoHits())
+                .append("  campos ").append(world.getFlowFields().getBuildCount()).append('\n');
+        }
+        text.append("alloc ").append(ms(allocRateMb)).append(" MB/s  ui redraws ").append(uiRedraws);
+    }
+
+    // Dos decimales sin String.format (que reserva memoria en cada llamada)
+    private static float ms(float v) {
+        return Math.round(v * 100f) / 100f;
+    }
+
+    @Override
+    public void dispose() {
+        if (profiler.isEnabled()) glProfiler.disable();
+        batch.dispose();
+        font.dispose();
+    }
+}
@@ -0,0 +1,202 @@
+package com.armymen.screens;
+
+import com.armymen.systems.TerrainMap;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Terreno dibujado por trozos ({@link TerrainMap#CHUNK_TILES} casillas de lado). Cada trozo
+ * se sube una vez a un SpriteCache (malla estática en la GPU) y sólo se vuelve a construir
+ * si el mapa cambia su versión (p. ej. al poner un edificio o al cargarse del disco).
+ * Un trozo descargado conserva su malla: se sigue viendo igual. Por frame se dibujan los
+ * trozos que toca la cámara: un draw call por trozo, sin recorrer casillas.
+ *
+ * El caché tiene huecos para el doble de los trozos que caben en pantalla; en mapas más
+ * grandes los trozos lejanos dejan su hueco al último que entró en cámara (LRU).
+ */
+class TerrainRenderer implements Disposable {
+
+    private static final int TILE_PIXELS = 32;
+    private static final int VARIANTS = 4;                 // variantes por tipo, para que no se note la repetición
+    private static final int MAX_INDEXED_SPRITES = 8191;   // límite del SpriteCache con índices
+    private static final int CHUNK_SPRITES = TerrainMap.CHUNK_TILES * TerrainMap.CHUNK_TILES;
+
+    // Color base de cada tipo de suelo (GRASS, DIRT, SAND, CONCRETE) y después de cada elemento (ROCK, DEPOSIT)
+    private static final float[][] COLORS = {
+        { 0.42f, 0.60f, 0.30f }, { 0.55f, 0.42f, 0.28f }, { 0.86f, 0.78f, 0.56f }, { 0.62f, 0.62f, 0.60f },
+        { 0.36f, 0.34f, 0.33f }, { 0.30f, 0.55f, 0.75f }
+    };
+    private static final int ROWS = TerrainMap.TYPE_COUNT + TerrainMap.FEATURE_COUNT - 1;   // NONE no tiene fila
+
+    private final Texture tileset;
+    private final TextureRegion[][] regions = new TextureRegion[ROWS][VARIANTS];
+
+    private TerrainMap map;
+    private SpriteCache cache;
+    private int slots;
+    private int[] slotCacheId = new int[0];
+    private int[] slotChunk = new int[0];       // trozo que ocupa cada hueco (-1 libre)
+    private int[] slotVersion = new int[0];     // versión del trozo con la que se construyó
+    private long[] slotUsed = new long[0];      // último frame en que se dibujó
+    private int[] chunkSlot;                    // hueco de cada trozo (-1 si no está en el caché)
+    private int[] visible = new int[0];
+    private long frame;
+
+    private int drawnChunks;
+    private int builtChunks;
+
+    TerrainRenderer() {
+        tileset = createTileset();
+        tileset.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+        for (int t = 0; t < ROWS; t++)
+            for (int v = 0; v < VARIANTS; v++)
+                regions[t][v] = new TextureRegion(tileset, v * TILE_PIXELS, t * TILE_PIXELS, TILE_PIXELS, TILE_PIXELS);
+    }
+
+    /** Cambia el mapa a dibujar; todo el caché queda libre. */
+    void setMap(TerrainMap map) {
+        this.map = map;
+        chunkSlot = new int[map.getChunksX() * map.getChunksY()];
+        Arrays.fill(chunkSlot, -1);
+        Arrays.fill(slotChunk, -1);
+    }
+
+    void render(OrthographicCamera camera) {
+        if (map == null) return;
+        frame++;
+        float chunkSize = TerrainMap.CHUNK_TILES * map.getTileSize();
+        float w = camera.viewportWidth * camera.zoom, h = camera.viewportHeight * camera.zoom;
+        int cx0 = clamp((int) Math.floor((camera.position.x - w / 2f) / chunkSize), map.getChunksX());
+        int cx1 = clamp((int) Math.floor((camera.position.x + w / 2f) / chunkSize), map.getChunksX());
+        int cy0 = clamp((int) Math.floor((camera.position.y - h / 2f) / chunkSize), map.getChunksY());
+        int cy1 = clamp((int) Math.floor((camera.position.y + h / 2f) / chunkSize), map.getChunksY());
+
+        // Huecos para el doble de lo visible (si la pantalla crece, el caché también)
+        int count = (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+        if (count > slots) ensureSlots(Math.min(count * 2, chunkSlot.length));
+
+        // Primero se (re)construye lo necesario: el SpriteCache no admite cambios entre begin y end
+        drawnChunks = 0;
+        for (int cy = cy0; cy <= cy1; cy++)
+            for (int cx = cx0; cx <= cx1; cx++) visible[drawnChunks++] = slotFor(cx, cy);
+
+        cache.setProjectionMatrix(camera.combined);
+        cache.begin();
+        for (int i = 0; i < drawnChunks; i++) cache.draw(slotCacheId[visible[i]]);
+        cache.end();
+    }
+
+    // Hueco con el trozo (cx, cy) al día; si no estaba, usa el que lleva más tiempo sin dibujarse
+    private int slotFor(int cx, int cy) {
+        int chunk = cy * map.getChunksX() + cx;
+        int slot = chunkSlot[chunk];
+        if (slot < 0) {
+            slot = 0;
+            for (int s = 1; s < slots; s++) if (slotUsed[s] < slotUsed[slot]) slot = s;
+            if (slotChunk[slot] >= 0) chunkSlot[slotChunk[slot]] = -1;
+            slotChunk[slot] = chunk;
+            chunkSlot[chunk] = slot;
+            slotVersion[slot] = -1;
+        }
+        int version = map.getChunkVersion(chunk);
+        if (slotVersion[slot] != version) {
+            build(slot, cx, cy);
+            slotVersion[slot] = version;
+        }
+        slotUsed[slot] = frame;
+        return slot;
+    }
+
+    private void build(int slot, int cx, int cy) {
+        float size = map.getTileSize();
+        int tx0 = cx * TerrainMap.CHUNK_TILES, ty0 = cy * TerrainMap.CHUNK_TILES;
+        int tx1 = Math.min(tx0 + TerrainMap.CHUNK_TILES, map.getTilesX());
+        int ty1 = Math.min(ty0 + TerrainMap.CHUNK_TILES, map.getTilesY());
+        cache.beginCache(slotCacheId[slot]);
+        for (int ty = ty0; ty < ty1; ty++)
+            for (int tx = tx0; tx < tx1; tx++)
+                cache.add(regions[row(tx, ty)][variant(tx, ty)], tx * size, ty * size, size, size);
+        slotCacheId[slot] = cache.endCache();
+        builtChunks++;
+    }
+
+    // Crea el SpriteCache con sitio para 'count' trozos completos (sólo crece)
+    private void ensureSlots(int count) {
+        if (cache != null) cache.dispose();
+        int sprites = count * CHUNK_SPRITES;
+        cache = new SpriteCache(sprites, sprites <= MAX_INDEXED_SPRITES);
+        slots = count;
+        slotCacheId = new int[count];
+        slotChunk = new int[count];
+        slotVersion = new int[count];
+        slotUsed = new long[count];
+        visible = new int[count];
+        Arrays.fill(slotChunk, -1);
+        Arrays.fill(chunkSlot, -1);
+
+        // Cada hueco se reserva con un trozo entero: luego se puede redefinir con lo mismo o menos
+        TextureRegion any = regions[0][0];
+        for (int s = 0; s < count; s++) {
+            cache.beginCache();
+            for (int i = 0; i < CHUNK_SPRITES; i++) cache.add(any, 0f, 0f, 0f, 0f);
+            slotCacheId[s] = cache.endCache();
+        }
+    }
+
+    /** Trozos dibujados en el último frame. */
+    int getDrawnChunks() { return drawnChunks; }
+
+    /** Trozos construidos (subidos a la GPU) desde el principio. */
+    int getBuiltChunks() { return builtChunks; }
+
+    // El elemento (roca, yacimiento) tapa el suelo
+    private int row(int tx, int ty) {
+        int feature = map.getFeature(tx, ty);
+        return feature != TerrainMap.NONE ? TerrainMap.TYPE_COUNT + feature - 1 : map.getType(tx, ty);
+    }
+
+    private static int variant(int tx, int ty) {
+        int h = tx * 73856093 ^ ty * 19349663;
+        return (h ^ (h >>> 13)) & (VARIANTS - 1);
+    }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : v >= size ? size - 1 : v;
+    }
+
+    // Casillas generadas: color base con motas más claras y más oscuras, distintas en cada variante
+    private static Texture createTileset() {
+        Pixmap pixmap = new Pixmap(VARIANTS * TILE_PIXELS, ROWS * TILE_PIXELS, Pixmap.Format.RGBA8888);
+        Random random = new Random(7L);
+        for (int t = 0; t < ROWS; t++) {
+            float[] c = COLORS[t];
+            for (int v = 0; v < VARIANTS; v++) {
+                int x0 = v * TILE_PIXELS, y0 = t * TILE_PIXELS;
+                pixmap.setColor(c[0], c[1], c[2], 1f);
+                pixmap.fillRectangle(x0, y0, TILE_PIXELS, TILE_PIXELS);
+                for (int i = 0; i < TILE_PIXELS * 3; i++) {
+                    float k = 0.85f + random.nextFloat() * 0.3f;
+                    pixmap.setColor(Math.min(1f, c[0] * k), Math.min(1f, c[1] * k), Math.min(1f, c[2] * k), 1f);
+                    pixmap.drawPixel(x0 + random.nextInt(TILE_PIXELS), y0 + random.nextInt(TILE_PIXELS));
+                }
+            }
+        }
+        Texture texture = new Texture(pixmap);
+        pixmap.dispose();
+        return texture;
+    }
+
+    @Override
+    public void dispose() {
+        if (cache != null) cache.dispose();
+        tileset.dispose();
+    }
+}
@@ -0,0 +1,88 @@
+package com.armymen.screens;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.scenes.scene2d.Event;
+import com.badlogic.gdx.scenes.scene2d.EventListener;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.Stage;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Caché de la UI en un FrameBuffer. El Stage sólo se vuelve a dibujar cuando algo
+ * cambia (un evento de entrada sobre la UI, un texto nuevo, un cambio de tamaño);
+ * el resto de frames la UI entera es un único sprite.
+ */
+class UiCache implements Disposable {
+
+    private final Stage stage;
+    private final SpriteBatch batch = new SpriteBatch(1);
+    private FrameBuffer fbo;
+    private TextureRegion region;
+    private boolean dirty = true;
+    private int redraws;
+
+    UiCache(Stage stage) {
+        this.stage = stage;
+        // Al FBO vacío hay que escribirle el alfa bien: color premultiplicado + alfa acumulado
+        stage.getBatch().setBlendFunctionSeparate(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA,
+            GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+        // Cualquier evento que llegue a un actor (hover, clic, teclado) puede cambiar su aspecto
+        stage.getRoot().addCaptureListener(new EventListener() {
+            @Override public boolean handle(Event event) {
+                if (!(event instanceof InputEvent) || ((InputEvent) event).getType() != InputEvent.Type.mouseMoved)
+                    dirty = true;
+                return false;
+            }
+        });
+    }
+
+    /** Marca la UI para redibujarla en el próximo frame. */
+    void invalidate() {
+        dirty = true;
+    }
+
+    void resize(int width, int height) {
+        if (fbo != null) fbo.dispose();
+        fbo = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+        region = new TextureRegion(fbo.getColorBufferTexture());
+        region.flip(false, true); // el FBO está boca abajo
+        dirty = true;
+    }
+
+    void draw() {
+        if (fbo == null) resize(Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+        // Acciones en curso (animaciones de Scene2D): hay que redibujar cada frame
+        if (dirty || stage.getRoot().hasActions()) {
+            fbo.begin();
+            Gdx.gl.glClearColor(0, 0, 0, 0);
+            Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+            stage.draw();
+            fbo.end();
+            dirty = false;
+            redraws++;
+        }
+        float w = Gdx.graphics.getWidth(), h = Gdx.graphics.getHeight();
+        batch.getProjectionMatrix().setToOrtho2D(0, 0, w, h);
+        batch.begin();
+        batch.draw(region, 0, 0, w, h);
+        batch.end();
+    }
+
+    /** Veces que se volvió a dibujar el Stage (para perfilar). */
+    int getRedraws() {
+        return redraws;
+    }
+
+    @Override
+    public void dispose() {
+        if (fbo != null) fbo.dispose();
+        batch.dispose();
+    }
+}
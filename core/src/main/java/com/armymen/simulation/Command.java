@@ -0,0 +1,219 @@
+package com.armymen.simulation;
+
+import com.armymen.systems.FormationPlanner;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Orden de un jugador marcada con el tick de simulación en el que se aplica.
+ * Todo lo que cambia el mundo desde la entrada pasa por aquí ({@link GameWorld#execute(Command)}),
+ * así una partida se puede grabar y volver a reproducir tick a tick.
+ *
+ * En el fichero cada orden ocupa unos pocos bytes: el tick va como diferencia con la
+ * orden anterior y los ids de una selección, ordenados, como diferencias entre sí o como
+ * tramos de ids seguidos, lo que ocupe menos (enteros de longitud variable, 7 bits por byte).
+ * Una caja sobre unidades propias suele ser unos pocos tramos.
+ */
+public final class Command {
+
+    public enum Type { SELECT, MOVE, BUILD, FORMATION }
+
+    /** {@link #value} de una SELECT que añade al grupo en vez de reemplazarlo (ver {@link #slice}). */
+    public static final int APPEND = 1;
+
+    private static final Type[] TYPES = Type.values();
+    private static final int SELECT_RANGES = 1, SELECT_APPEND = 2;   // byte de opciones de SELECT
+
+    public final Type type;
+    public final int tick;
+    public final int player;
+    public final float x, y;        // MOVE, BUILD: punto del mapa
+    public final int[] ids;         // SELECT: ids de unidad en orden creciente
+    public final int value;         // FORMATION: ordinal de la forma; SELECT: 0 o APPEND
+
+    private Command(Type type, int tick, int player, float x, float y, int[] ids, int value) {
+        this.type = type;
+        this.tick = tick;
+        this.player = player;
+        this.x = x;
+        this.y = y;
+        this.ids = ids;
+        this.value = value;
+    }
+
+    /** Grupo al que irán las siguientes órdenes de movimiento. Se copia ordenado (el orden no importa). */
+    public static Command select(int tick, int player, IntArray ids) {
+        int[] sorted = Arrays.copyOf(ids.items, ids.size);
+        Arrays.sort(sorted);
+        return new Command(Type.SELECT, tick, player, 0f, 0f, sorted, 0);
+    }
+
+    /**
+     * Ids [from, to) de esta SELECT como otra SELECT. Salvo el primero, los trozos se añaden
+     * al grupo: así una selección enorme puede ir repartida en varios paquetes.
+     */
+    public Command slice(int from, int to) {
+        if (type != Type.SELECT) throw new IllegalStateException("No es una selección: " + type);
+        int mode = from > 0 ? APPEND : value;
+        return new Command(Type.SELECT, tick, player, 0f, 0f, Arrays.copyOfRange(ids, from, to), mode);
+    }
+
+    public static Command move(int tick, int player, float x, float y) {
+        return new Command(Type.MOVE, tick, player, x, y, null, 0);
+    }
+
+    public static Command build(int tick, int player, float x, float y) {
+        return new Command(Type.BUILD, tick, player, x, y, null, 0);
+    }
+
+    public static Command formation(int tick, int player, FormationPlanner.Shape shape) {
+        return new Command(Type.FORMATION, tick, player, 0f, 0f, null, shape.ordinal());
+    }
+
+    /** Escribe la orden; el tick va relativo a {@code previousTick}. */
+    public void write(DataOutput out, int previousTick) throws IOException {
+        writeVarInt(out, tick - previousTick);
+        out.writeByte(type.ordinal());
+        out.writeByte(player);
+        switch (type) {
+            case SELECT: {
+                boolean ranges = rangeBytes(ids) < deltaBytes(ids);
+                writeVarInt(out, ids.length);
+                out.writeByte((ranges ? SELECT_RANGES : 0) | (value == APPEND ? SELECT_APPEND : 0));
+                int prev = 0;
+                if (ranges) {
+                    // Tramo: inicio respecto al final del anterior, longitud - 1
+                    for (int i = 0; i < ids.length; ) {
+                        int end = runEnd(ids, i);
+                        writeVarInt(out, ids[i] - prev);
+                        writeVarInt(out, end - i - 1);
+                        prev = ids[end - 1];
+                        i = end;
+                    }
+                } else {
+                    for (int id : ids) {
+                        writeVarInt(out, id - prev);
+                        prev = id;
+                    }
+                }
+                break;
+            }
+            case MOVE:
+            case BUILD:
+                out.writeFloat(x);
+                out.writeFloat(y);
+                break;
+            case FORMATION:
+                out.writeByte(value);
+                break;
+        }
+    }
+
+    /**
+     * Lee una orden escrita con {@link #write(DataOutput, int)}, o null si no es válida (tipo,
+     * jugador, o una selección de más de {@code maxIds} ids). Si faltan bytes lanza
+     * BufferUnderflowException; nunca reserva más de lo que justifica la orden.
+     */
+    public static Command read(ByteBuffer in, int previousTick, int maxIds) {
+        int tick = previousTick + readVarInt(in);
+        int t = in.get() & 0xFF;
+        if (t >= TYPES.length) return null;
+        int player = in.get() & 0xFF;
+        if (player >= GameWorld.MAX_PLAYERS) return null;
+        switch (TYPES[t]) {
+            case SELECT: {
+                int count = readVarInt(in);
+                int flags = in.get() & 0xFF;
+                boolean ranges = (flags & SELECT_RANGES) != 0;
+                // Sin tramos cada id ocupa al menos un byte
+                if (count < 0 || count > maxIds || (!ranges && count > in.remaining())) return null;
+                int[] ids = new int[count];
+                int prev = 0;
+                if (ranges) {
+                    for (int i = 0; i < count; ) {
+                        int start = prev + readVarInt(in);
+                        int length = readVarInt(in) + 1;
+                        if (length <= 0 || length > count - i) return null;
+                        for (int k = 0; k < length; k++) ids[i++] = start + k;
+                        prev = ids[i - 1];
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        prev += readVarInt(in);
+                        ids[i] = prev;
+                    }
+                }
+                return new Command(Type.SELECT, tick, player, 0f, 0f, ids, (flags & SELECT_APPEND) != 0 ? APPEND : 0);
+            }
+            case MOVE:
+                return move(tick, player, in.getFloat(), in.getFloat());
+            case BUILD:
+                return build(tick, player, in.getFloat(), in.getFloat());
+            default: {
+                int shape = in.get() & 0xFF;
+                if (shape >= FormationPlanner.Shape.values().length) return null;
+                return new Command(Type.FORMATION, tick, player, 0f, 0f, null, shape);
+            }
+        }
+    }
+
+    // Fin (exclusivo) del tramo de ids seguidos que empieza en 'from'
+    private static int runEnd(int[] ids, int from) {
+        int end = from + 1;
+        while (end < ids.length && ids[end] == ids[end - 1] + 1) end++;
+        return end;
+    }
+
+    private static int deltaBytes(int[] ids) {
+        int bytes = 0, prev = 0;
+        for (int id : ids) {
+            bytes += varIntBytes(id - prev);
+            prev = id;
+        }
+        return bytes;
+    }
+
+    private static int rangeBytes(int[] ids) {
+        int bytes = 0, prev = 0;
+        for (int i = 0; i < ids.length; ) {
+            int end = runEnd(ids, i);
+            bytes += varIntBytes(ids[i] - prev) + varIntBytes(end - i - 1);
+            prev = ids[end - 1];
+            i = end;
+        }
+        return bytes;
+    }
+
+    static int varIntBytes(int v) {
+        int bytes = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get() & 0xFF;
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new GdxRuntimeException("Entero variable demasiado largo");
+    }
+}
@@ -0,0 +1,92 @@
+package com.armymen.simulation;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Graba una partida como foto inicial del mundo ({@link WorldSnapshot}) más la lista
+ * de órdenes del jugador por tick. {@link CommandReplay} la vuelve a ejecutar.
+ *
+ * Fichero: MAGIC, VERSION, duración del tick, tamaño y bytes de la foto; después las
+ * órdenes ({@link Command}, la primera con el tick contado desde el de la foto) y al parar una marca de fin con el tick final y
+ * {@link GameWorld#stateHash()} para comprobar que la repetición acaba igual.
+ * Las órdenes se escriben según llegan: si el juego se cierra mal, lo grabado sirve igual.
+ */
+public class CommandRecorder {
+
+    public static final int MAGIC = 0x414D5250;   // "AMRP"
+    public static final int VERSION = 4;
+    static final int END = 0xFF;
+
+    private DataOutputStream out;
+    private Path file;
+    private int lastTick;
+    private int commands;
+
+    /**
+     * Empieza a grabar desde el estado actual de {@code world}. Devuelve el mundo con el que
+     * hay que seguir jugando: uno nuevo cargado de la misma foto que queda en el fichero,
+     * así la partida y su repetición arrancan exactamente igual (caminos y campos de
+     * flujo incluidos, que la foto no guarda).
+     */
+    public GameWorld start(GameWorld world, Path target, float tickSeconds) {
+        if (out != null) throw new IllegalStateException("Ya se está grabando " + file);
+        ByteBuffer snapshot = ByteBuffer.allocate((int) WorldSnapshot.byteSize(world));
+        WorldSnapshot.write(world, snapshot);
+        snapshot.flip();
+
+        try {
+            if (target.getParent() != null) Files.createDirectories(target.getParent());
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeFloat(tickSeconds);
+            out.writeInt(snapshot.limit());
+            out.write(snapshot.array(), 0, snapshot.limit());
+        } catch (IOException e) {
+            out = null;
+            throw new GdxRuntimeException("No se pudo grabar en " + target, e);
+        }
+        file = target;
+        lastTick = world.getTick();   // la foto guarda el tick: la repetición sigue desde él
+        commands = 0;
+        return WorldSnapshot.read(snapshot, target.toString());
+    }
+
+    /** Añade una orden. Llamar justo cuando se aplica ({@link GameWorld#execute(Command)}). */
+    public void record(Command command) {
+        if (out == null) return;
+        try {
+            command.write(out, lastTick);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo escribir " + file, e);
+        }
+        lastTick = command.tick;
+        commands++;
+    }
+
+    /** Cierra la grabación con el tick y la huella de {@code world}. Devuelve el fichero (o null). */
+    public Path stop(GameWorld world) {
+        if (out == null) return null;
+        try {
+            Command.writeVarInt(out, world.getTick() - lastTick);
+            out.writeByte(END);
+            out.writeLong(world.stateHash());
+            out.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo cerrar " + file, e);
+        } finally {
+            out = null;
+        }
+        return file;
+    }
+
+    public boolean isRecording() { return out != null; }
+    public int getCommandCount() { return commands; }
+}
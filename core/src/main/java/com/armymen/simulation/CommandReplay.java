@@ -0,0 +1,107 @@
+package com.armymen.simulation;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Repite una partida grabada con {@link CommandRecorder}: carga la foto inicial y
+ * avanza tick a tick aplicando cada orden en su tick, sin ventana ni espera.
+ * Las órdenes se leen del fichero mapeado a medida que hacen falta.
+ */
+public class CommandReplay {
+
+    private final ByteBuffer buf;
+    private final String source;
+    private final GameWorld world;
+    private final float tickSeconds;
+
+    private Command next;
+    private int lastTick;
+    private boolean ended;          // se leyó la marca de fin
+    private int endTick;
+    private long expectedHash;
+
+    private CommandReplay(ByteBuffer buf, String source) {
+        this.buf = buf;
+        this.source = source;
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.remaining() < 16 || buf.getInt() != CommandRecorder.MAGIC) throw corrupt("no es una grabación");
+        int version = buf.getInt();
+        if (version != CommandRecorder.VERSION) throw corrupt("versión " + version + " no soportada");
+        tickSeconds = buf.getFloat();
+        int snapshotBytes = buf.getInt();
+        if (snapshotBytes < 0 || snapshotBytes > buf.remaining()) throw corrupt("foto inicial incompleta");
+
+        ByteBuffer snapshot = buf.slice();
+        snapshot.limit(snapshotBytes);
+        world = WorldSnapshot.read(snapshot, source);
+        buf.position(buf.position() + snapshotBytes);
+        lastTick = world.getTick();
+        readNext();
+    }
+
+    public static CommandReplay open(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CommandReplay(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), file.toString());
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo abrir la grabación " + file, e);
+        }
+    }
+
+    /** Aplica las órdenes del tick actual y simula un tick. Devuelve false si ya terminó. */
+    public boolean step() {
+        if (isFinished()) return false;
+        while (next != null && next.tick <= world.getTick()) {
+            world.execute(next);
+            readNext();
+        }
+        world.step(tickSeconds);
+        return true;
+    }
+
+    /** Sin órdenes pendientes y, si la grabación se cerró bien, en su tick final. */
+    public boolean isFinished() {
+        return next == null && (!ended || world.getTick() >= endTick);
+    }
+
+    private void readNext() {
+        next = null;
+        if (ended || !buf.hasRemaining()) return;
+        try {
+            buf.mark();
+            int tick = lastTick + Command.readVarInt(buf);
+            if ((buf.get() & 0xFF) == CommandRecorder.END) {
+                endTick = tick;
+                expectedHash = buf.getLong();
+                ended = true;
+                return;
+            }
+            buf.reset();
+            next = Command.read(buf, lastTick, world.getUnits().size);
+            if (next == null) throw corrupt("orden no válida");
+            lastTick = next.tick;
+        } catch (BufferUnderflowException e) {
+            // Grabación cortada (el juego no llegó a pararla): se repite hasta donde hay
+            next = null;
+        }
+    }
+
+    public GameWorld getWorld() { return world; }
+    public float getTickSeconds() { return tickSeconds; }
+
+    /** ¿Tiene la grabación marca de fin (y por tanto huella que comparar)? */
+    public boolean hasExpectedHash() { return ended; }
+    public long getExpectedHash() { return expectedHash; }
+    public int getEndTick() { return endTick; }
+
+    private GdxRuntimeException corrupt(String reason) {
+        return new GdxRuntimeException("Grabación no válida " + source + ": " + reason);
+    }
+}
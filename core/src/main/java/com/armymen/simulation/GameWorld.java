@@ -0,0 +1,662 @@
+package com.armymen.simulation;
+
+import com.armymen.entities.Building;
+import com.armymen.entities.Bulldozer;
+import com.armymen.entities.Unit;
+import com.armymen.jfr.GameEvents;
+import com.armymen.systems.FlowField;
+import com.armymen.systems.FlowFieldCache;
+import com.armymen.systems.FogOfWar;
+import com.armymen.systems.FormationPlanner;
+import com.armymen.systems.FrameProfiler;
+import com.armymen.systems.MapFile;
+import com.armymen.systems.OccupancyGrid;
+import com.armymen.systems.ParallelUnitUpdater;
+import com.armymen.systems.PathService;
+import com.armymen.systems.ResourceManager;
+import com.armymen.systems.SpatialGrid;
+import com.armymen.systems.SteeringSystem;
+import com.armymen.systems.TerrainMap;
+import com.armymen.systems.UnitStore;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Estado del mundo y lógica de simulación, sin nada de render ni de entrada.
+ * GameScreen lo dibuja y le pasa órdenes; el módulo headless lo ejecuta sin GPU.
+ */
+public class GameWorld {
+
+    public static final float DEFAULT_MAP_SIZE = 2000f;
+    public static final int MAX_PLAYERS = 8;
+    public static final int STORAGE_COST = 50;
+    public static final String STORAGE_TEXTURE = "building_storage.png";
+    public static final float TILE_SIZE = 40f;            // casilla de terreno (un sprite)
+    private static final long TERRAIN_SEED = 1L;
+    private static final float FOG_CELL_SIZE = 80f;       // celda de la niebla de guerra
+    private static final float VISION_RADIUS = 320f;      // alcance de vista de soldados y bulldozers
+    private static final float GRID_CELL_SIZE = 100f;
+    private static final float LOAD_TEST_SLOT = 200f;     // separación de los edificios de createLoadTest
+    private static final float NAV_CELL_SIZE = 40f;
+    private static final int FLOW_FIELD_CACHE_SIZE = 8;
+    private static final int PATH_SECTOR_CELLS = 8;       // sectores de 8x8 celdas para memorizar caminos
+    private static final float SEPARATION_RADIUS = 28f;   // algo menos que el sprite (40px)
+    private static final int MAX_NEIGHBORS = 8;           // vecinos revisados por unidad y tick
+    private static final float FORMATION_SPACING = 40f;   // distancia entre huecos (un sprite)
+    private static final float PICK_RADIUS = 25f;         // radio de clic de las unidades
+    private static final int PARALLEL_CHUNK = 2048;      // ids por tarea (8 KB por array de floats)
+    private static final int PARALLEL_THRESHOLD = 4096;  // por debajo, el reparto cuesta más que lo que ahorra
+
+    /** Resultado de una orden de construcción. */
+    public enum BuildResult { STARTED, OCCUPIED, NO_PLASTIC, BUSY }
+
+    private final float mapWidth, mapHeight;
+    private final TerrainMap terrain;
+    private final UnitStore unitStore;
+    private final Array<Unit> units = new Array<>();
+    private final Array<Building> buildings = new Array<>();
+    private final SpatialGrid<Unit> unitGrid;
+    private final SpatialGrid<Building> buildingGrid;
+    private final OccupancyGrid occupancy;
+    private final FlowFieldCache flowFields;
+    private final PathService pathService;
+    private final SteeringSystem steering;
+    private final FogOfWar fog;
+    private final Array<Bulldozer> bulldozers = new Array<>();
+
+    // Por jugador: recursos, bulldozer de las órdenes de obra, formación y grupo seleccionado
+    private final int players;
+    private final ResourceManager[] resources;
+    private final Bulldozer[] playerBulldozers;
+    private final FormationPlanner.Shape[] formationShapes;
+    private final Array<Unit>[] orderGroups;
+    private final ParallelUnitUpdater unitUpdater =
+        new ParallelUnitUpdater(ForkJoinPool.commonPool(), PARALLEL_CHUNK);
+    private boolean parallel = true;
+    private FrameProfiler profiler;   // opcional: tiempos por sistema para el panel de rendimiento
+    private int tick;                 // ticks simulados desde que se creó el mundo
+
+    // Estado de las órdenes (Command): resultado de la última obra
+    private final Vector2 orderPos = new Vector2();
+    private BuildResult lastBuildResult;
+
+    private final Array<Unit> unitQuery = new Array<>(false, 64);
+    private final Array<Building> buildingQuery = new Array<>(false, 64);
+    private final Rectangle pickArea = new Rectangle();
+    private final Rectangle footprint = new Rectangle();
+    private final Vector2 buildPos = new Vector2();
+    private final Vector2 pushDir = new Vector2();
+    private final FormationPlanner formations = new FormationPlanner(FORMATION_SPACING);
+
+    /** Mundo de un solo jugador. */
+    public GameWorld(float mapWidth, float mapHeight, int initialPlastic, int unitCapacity) {
+        this(mapWidth, mapHeight, initialPlastic, unitCapacity, 1);
+    }
+
+    /** Mundo con terreno liso (todo césped) del tamaño indicado. */
+    public GameWorld(float mapWidth, float mapHeight, int initialPlastic, int unitCapacity, int players) {
+        this(new TerrainMap(mapWidth, mapHeight, TILE_SIZE), initialPlastic, unitCapacity, players);
+    }
+
+    /** El tamaño del mapa lo da el terreno. */
+    @SuppressWarnings("unchecked")
+    public GameWorld(TerrainMap terrain, int initialPlastic, int unitCapacity, int players) {
+        if (players < 1 || players > MAX_PLAYERS) throw new IllegalArgumentException("Jugadores: " + players);
+        this.terrain = terrain;
+        this.mapWidth = terrain.getWidth();
+        this.mapHeight = terrain.getHeight();
+        this.unitStore = new UnitStore(unitCapacity);
+        this.players = players;
+        this.resources = new ResourceManager[players];
+        this.playerBulldozers = new Bulldozer[players];
+        this.formationShapes = new FormationPlanner.Shape[players];
+        this.orderGroups = new Array[players];
+        for (int p = 0; p < players; p++) {
+            resources[p] = new ResourceManager(initialPlastic);
+            formationShapes[p] = FormationPlanner.Shape.BOX;
+            orderGroups[p] = new Array<>(false, 64);
+        }
+        this.unitGrid = new SpatialGrid<>(mapWidth, mapHeight, GRID_CELL_SIZE);
+        this.buildingGrid = new SpatialGrid<>(mapWidth, mapHeight, GRID_CELL_SIZE);
+        this.occupancy = new OccupancyGrid(mapWidth, mapHeight, NAV_CELL_SIZE);
+        this.flowFields = new FlowFieldCache(occupancy, unitStore, FLOW_FIELD_CACHE_SIZE);
+        this.pathService = new PathService(occupancy, PATH_SECTOR_CELLS);
+        this.steering = new SteeringSystem(occupancy, mapWidth, mapHeight, SEPARATION_RADIUS, MAX_NEIGHBORS);
+        this.fog = new FogOfWar(mapWidth, mapHeight, FOG_CELL_SIZE, VISION_RADIUS, players);
+    }
+
+    // Listener de construcción de los bulldozers de este mundo
+    private final Bulldozer.BuildListener buildListener = new Bulldozer.BuildListener() {
+        @Override
+        public void onBuildingCreated(Building building) {
+            addBuilding(building);
+        }
+    };
+
+    /** Partida inicial por defecto: bulldozer, algunos soldados y un almacén. */
+    public static GameWorld createDefault() {
+        return createDefault(1);
+    }
+
+    /**
+     * Partida inicial para varios jugadores: cada uno con su bulldozer y cinco soldados,
+     * repartidos en círculo. Con un jugador es la partida de siempre. Todos los equipos
+     * crean el mismo mundo a partir sólo del número de jugadores.
+     */
+    public static GameWorld createDefault(int players) {
+        return createDefault(players, DEFAULT_MAP_SIZE);
+    }
+
+    /** Igual que {@link #createDefault(int)} en un mapa cuadrado de {@code mapSize} con terreno generado. */
+    public static GameWorld createDefault(int players, float mapSize) {
+        TerrainMap terrain = TerrainMap.generate(mapSize, mapSize, TILE_SIZE, TERRAIN_SEED);
+        GameWorld world = new GameWorld(terrain, 200, 64, players);
+        world.spawnStart();
+        return world;
+    }
+
+    /**
+     * Partida inicial sobre un mapa en disco ({@link MapFile}). El terreno no se carga
+     * (ver {@link com.armymen.systems.ChunkStreamer}); sólo se recorre una vez para poner
+     * las rocas en la rejilla de ocupación, que sí es del mapa entero. También lo son la
+     * búsqueda de caminos, los campos de flujo y la niebla: la memoria del mundo crece con
+     * el área del mapa, sólo la del terreno está acotada.
+     */
+    public static GameWorld fromMapFile(Path file, int players) {
+        GameWorld world = onMapFile(file, 200, 64, players);
+        world.spawnStart();
+        return world;
+    }
+
+    // Mundo vacío sobre un mapa en disco (también al cargar una partida guardada en uno)
+    static GameWorld onMapFile(Path file, int initialPlastic, int unitCapacity, int players) {
+        TerrainMap terrain = TerrainMap.open(file);
+        try {
+            GameWorld world = new GameWorld(terrain, initialPlastic, unitCapacity, players);
+            world.blockRocks();
+            return world;
+        } catch (RuntimeException e) {
+            terrain.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Mundo de pruebas de carga (escenario headless y benchmarks): plástico de sobra, un
+     * bulldozer en el centro, {@code buildings} edificios en huecos distintos de una rejilla
+     * de 200 y {@code units} soldados al azar. Sólo depende de {@code rnd}.
+     */
+    public static GameWorld createLoadTest(float mapSize, int units, int buildings, Random rnd) {
+        GameWorld world = new GameWorld(mapSize, mapSize, Integer.MAX_VALUE / 2, units + 1);
+        world.spawnBulldozer(mapSize / 2f, mapSize / 2f);
+
+        // Edificios en huecos distintos de una rejilla gruesa para que no se solapen
+        int slotsPerSide = (int) (mapSize / LOAD_TEST_SLOT);
+        int[] slots = new int[slotsPerSide * slotsPerSide];
+        for (int i = 0; i < slots.length; i++) slots[i] = i;
+        int count = Math.min(buildings, slots.length);
+        for (int i = 0; i < count; i++) {
+            int j = i + rnd.nextInt(slots.length - i);
+            int slot = slots[j];
+            slots[j] = slots[i];
+            float x = (slot % slotsPerSide) * LOAD_TEST_SLOT + LOAD_TEST_SLOT / 2f;
+            float y = (slot / slotsPerSide) * LOAD_TEST_SLOT + LOAD_TEST_SLOT / 2f;
+            world.addBuilding(new Building(new Vector2(x, y), STORAGE_TEXTURE));
+        }
+
+        for (int i = 0; i < units; i++) {
+            world.spawnUnit(rnd.nextFloat() * mapSize, rnd.nextFloat() * mapSize);
+        }
+        return world;
+    }
+
+    // Bulldozer y soldados de cada jugador (ver createDefault)
+    private void spawnStart() {
+        if (players == 1) {
+            spawnBulldozer(500, 500, 0);
+
+            // Algunos soldados
+            spawnUnit(400, 300, 0);
+            spawnUnit(600, 350, 0);
+            spawnUnit(800, 300, 0);
+            spawnUnit(1000, 500, 0);
+            spawnUnit(1200, 250, 0);
+
+            // Un edificio de ejemplo
+            addBuilding(new Building(new Vector2(700, 400), STORAGE_TEXTURE));
+            return;
+        }
+
+        float cx = mapWidth / 2f, cy = mapHeight / 2f, radius = Math.min(mapWidth, mapHeight) * 0.35f;
+        for (int p = 0; p < players; p++) {
+            double angle = 2 * Math.PI * p / players;
+            float bx = cx + radius * (float) Math.cos(angle);
+            float by = cy + radius * (float) Math.sin(angle);
+            spawnBulldozer(bx, by, p);
+            for (int i = 0; i < 5; i++) spawnUnit(bx - 100f + 50f * i, by - 80f, p);
+        }
+        addBuilding(new Building(new Vector2(cx, cy), STORAGE_TEXTURE));
+    }
+
+    // Las rocas de un mapa en disco no se pueden atravesar: se leen trozo a trozo con un solo array
+    private void blockRocks() {
+        MapFile source = terrain.getSource();
+        byte[] data = new byte[TerrainMap.CHUNK_BYTES];
+        float size = terrain.getTileSize();
+        Rectangle tile = new Rectangle();
+        for (int chunk = 0; chunk < terrain.getChunkCount(); chunk++) {
+            source.readChunk(chunk, data);
+            int tx0 = (chunk % terrain.getChunksX()) * TerrainMap.CHUNK_TILES;
+            int ty0 = (chunk / terrain.getChunksX()) * TerrainMap.CHUNK_TILES;
+            for (int i = 0; i < TerrainMap.CHUNK_AREA; i++) {
+                if (data[TerrainMap.CHUNK_AREA + i] != TerrainMap.ROCK) continue;
+                int tx = tx0 + i % TerrainMap.CHUNK_TILES, ty = ty0 + i / TerrainMap.CHUNK_TILES;
+                if (tx >= terrain.getTilesX() || ty >= terrain.getTilesY()) continue;
+                occupancy.block(tile.set(tx * size, ty * size, size, size));
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Creación de entidades
+    // -------------------------------------------------------------------------------------
+
+    public Unit spawnUnit(float x, float y) {
+        return spawnUnit(x, y, 0);
+    }
+
+    public Unit spawnUnit(float x, float y, int player) {
+        Unit u = new Unit(unitStore, new Vector2(x, y));
+        unitStore.owner[u.getId()] = player;
+        addUnit(u);
+        return u;
+    }
+
+    public Bulldozer spawnBulldozer(float x, float y) {
+        return spawnBulldozer(x, y, 0);
+    }
+
+    /** El primer bulldozer de cada jugador es el que recibe sus órdenes de obra. */
+    public Bulldozer spawnBulldozer(float x, float y, int player) {
+        Bulldozer b = new Bulldozer(unitStore, new Vector2(x, y));
+        unitStore.owner[b.getId()] = player;
+        b.setBuildListener(buildListener);
+        addUnit(b);
+        bulldozers.add(b);
+        if (playerBulldozers[player] == null) playerBulldozers[player] = b;
+        return b;
+    }
+
+    public void addBuilding(Building b) {
+        buildings.add(b);
+        buildingGrid.insert(b, b.getBounds());
+        occupancy.release(b.getBounds()); // si venía de una obra reservada
+        occupancy.block(b.getBounds());
+        flowFields.onObstacleAdded(b.getBounds());
+        pathService.onObstacleAdded(b.getBounds());
+        terrain.paint(b.getBounds(), TerrainMap.CONCRETE);   // cimientos bajo el edificio
+    }
+
+    // Los ids del UnitStore coinciden con el índice en 'units' (ParallelUnitUpdater lo necesita)
+    private void addUnit(Unit u) {
+        units.add(u);
+        unitGrid.insert(u, u.getX(), u.getY());
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Simulación
+    // -------------------------------------------------------------------------------------
+
+    /** Un tick de simulación de duración fija. */
+    public void step(float delta) {
+        GameEvents.Tick tickEvent = null;
+        if (GameEvents.enabled) {
+            tickEvent = new GameEvents.Tick();
+            tickEvent.begin();
+        }
+        unitStore.savePrevious();
+
+        // Campos de flujo afectados por edificios nuevos, antes de que las unidades los lean
+        flowFields.repairPending();
+        pathService.update();
+        if (profiler != null) profiler.begin(FrameProfiler.UNITS);
+        updateUnits(delta);
+        if (profiler != null) profiler.end(FrameProfiler.UNITS);
+        if (profiler != null) profiler.begin(FrameProfiler.COLLISIONS);
+        resolveBuildingCollisions();
+        if (profiler != null) profiler.end(FrameProfiler.COLLISIONS);
+        // Niebla: sólo las unidades que han cambiado de celda
+        if (profiler != null) profiler.begin(FrameProfiler.FOG);
+        fog.update(unitStore);
+        if (profiler != null) profiler.end(FrameProfiler.FOG);
+        tick++;
+
+        if (tickEvent != null) {
+            tickEvent.units = units.size;
+            tickEvent.buildings = buildings.size;
+            tickEvent.parallel = parallel && units.size >= PARALLEL_THRESHOLD;
+            tickEvent.commit();
+        }
+    }
+
+    /**
+     * Movimiento y lógica propia de cada unidad, repartido entre núcleos si hay muchas.
+     * Después, en este hilo y en orden de id, se aplican los efectos que dejaron pendientes.
+     */
+    public void updateUnits(float delta) {
+        // Vecinos según las posiciones del tick anterior (todas las unidades leen la misma foto)
+        steering.rebuild(unitStore);
+        if (parallel && units.size >= PARALLEL_THRESHOLD) {
+            unitUpdater.update(unitStore, steering, units, delta);
+        } else {
+            // Movimiento de todas las unidades en un solo bucle sobre arrays; luego lógica propia
+            unitStore.followFlow(0, unitStore.size());
+            unitStore.followPath(0, unitStore.size());
+            steering.steer(unitStore, 0, unitStore.size(), delta);
+            for (Unit u : units) u.update(delta);
+        }
+
+        // Punto de sincronización
+        for (int i = 0; i < bulldozers.size; i++) bulldozers.get(i).flushBuildEvents();
+    }
+
+    /** Evitar atravesar edificios (empujón suave): sólo los edificios de la celda de la unidad. */
+    public void resolveBuildingCollisions() {
+        GameEvents.CollisionPass event = null;
+        if (GameEvents.enabled) {
+            event = new GameEvents.CollisionPass();
+            event.begin();
+        }
+        for (Unit u : units) {
+            float x = u.getX(), y = u.getY();
+            Array<Building> nearby = buildingGrid.cellAt(x, y);
+            for (int i = 0; i < nearby.size; i++) {
+                Building b = nearby.get(i);
+                if (b.getBounds().contains(x, y)) {
+                    pushDir.set(x, y).sub(b.getPosition()).nor();
+                    x += pushDir.x * 3f; // retrocede un poco
+                    y += pushDir.y * 3f;
+                }
+            }
+            u.setPosition(x, y);
+            unitGrid.update(u, x, y);
+        }
+        if (event != null) {
+            event.units = units.size;
+            event.commit();
+        }
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Órdenes y consultas
+    // -------------------------------------------------------------------------------------
+
+    /**
+     * Aplica una orden del jugador antes del próximo tick. Las órdenes de la entrada
+     * pasan todas por aquí para que una grabación las pueda repetir igual.
+     */
+    public void execute(Command command) {
+        int player = command.player;
+        if (player < 0 || player >= players) return;
+        switch (command.type) {
+            case SELECT:
+                select(player, command.ids, command.ids.length, command.value == Command.APPEND);
+                break;
+            case MOVE:
+                orderMove(orderGroups[player], orderPos.set(command.x, command.y), formationShapes[player]);
+                break;
+            case BUILD:
+                lastBuildResult = orderBuildStorage(player, orderPos.set(command.x, command.y));
+                break;
+            case FORMATION:
+                formationShapes[player] = FormationPlanner.Shape.values()[command.value];
+                break;
+        }
+    }
+
+    /**
+     * Grupo de las próximas órdenes de movimiento de {@code player}: los {@code count}
+     * primeros ids (sólo cuentan las unidades propias), en lugar del grupo anterior o
+     * añadidos a él. Es lo que hace una orden SELECT.
+     */
+    public void select(int player, int[] ids, int count, boolean append) {
+        if (player < 0 || player >= players) return;
+        Array<Unit> group = orderGroups[player];
+        if (!append) group.clear();
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            if (id >= 0 && id < units.size && unitStore.owner[id] == player) group.add(units.get(id));
+        }
+    }
+
+    /** Resultado de la última orden BUILD ejecutada (null si aún no hubo ninguna). */
+    public BuildResult getLastBuildResult() { return lastBuildResult; }
+
+    /**
+     * Huella del estado de la simulación (tick, plástico, posiciones y destinos de las
+     * unidades, edificios). Dos mundos que han recibido las mismas órdenes dan lo mismo.
+     */
+    public long stateHash() {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, tick);
+        for (int p = 0; p < players; p++) h = mix(h, resources[p].getPlastic());
+        h = mix(h, units.size);
+        for (int i = 0; i < unitStore.size(); i++) {
+            h = mix(h, Float.floatToIntBits(unitStore.x[i]));
+            h = mix(h, Float.floatToIntBits(unitStore.y[i]));
+            h = mix(h, Float.floatToIntBits(unitStore.goalX[i]));
+            h = mix(h, Float.floatToIntBits(unitStore.goalY[i]));
+        }
+        h = mix(h, buildings.size);
+        for (int i = 0; i < buildings.size; i++) {
+            h = mix(h, Float.floatToIntBits(buildings.get(i).getPosition().x));
+            h = mix(h, Float.floatToIntBits(buildings.get(i).getPosition().y));
+        }
+        return h;
+    }
+
+    // FNV-1a sobre enteros de 32 bits
+    private static long mix(long h, int v) {
+        return (h ^ (v & 0xFFFFFFFFL)) * 0x100000001b3L;
+    }
+
+    /** Posición donde quedaría un edificio pedido en (x, y): alineada a la rejilla de ocupación. */
+    public Vector2 snapBuildPosition(float x, float y, Vector2 out) {
+        return out.set(occupancy.snap(x), occupancy.snap(y));
+    }
+
+    /** Huella de un edificio centrado en (x, y), en un rectángulo reutilizado. */
+    public Rectangle footprintAt(float x, float y) {
+        float half = Building.SIZE / 2f;
+        return footprint.set(x - half, y - half, Building.SIZE, Building.SIZE);
+    }
+
+    /** ¿Cabe un edificio en la posición pedida? Prueba la huella entera contra la rejilla (O(1)). */
+    public boolean isSpaceFree(Vector2 pos) {
+        snapBuildPosition(pos.x, pos.y, buildPos);
+        return occupancy.isAreaFree(footprintAt(buildPos.x, buildPos.y));
+    }
+
+    /** Construcción directa de un almacén del jugador 0. */
+    public BuildResult orderBuildStorage(Vector2 pos) {
+        return orderBuildStorage(0, pos);
+    }
+
+    /** Construcción directa de un almacén: no requiere tener seleccionado el bulldozer. */
+    public BuildResult orderBuildStorage(int player, Vector2 pos) {
+        snapBuildPosition(pos.x, pos.y, buildPos);
+        Rectangle area = footprintAt(buildPos.x, buildPos.y);
+        if (!occupancy.isAreaFree(area)) return BuildResult.OCCUPIED;
+        Bulldozer bulldozer = playerBulldozers[player];
+        if (bulldozer == null || bulldozer.isBusy()) return BuildResult.BUSY;
+        if (!resources[player].spend(STORAGE_COST)) return BuildResult.NO_PLASTIC;
+
+        // El hueco queda reservado hasta que el edificio exista: otra orden no puede pisarlo
+        occupancy.reserve(area);
+        // Ordenar al bulldozer que vaya a construir, con un camino que rodee los edificios
+        bulldozer.orderBuild(buildPos);
+        Vector2 approach = bulldozer.getBuildApproachPos();
+        bulldozer.followPath(pathService.request(bulldozer.getX(), bulldozer.getY(), approach.x, approach.y));
+        return BuildResult.STARTED;
+    }
+
+    /**
+     * Mueve el grupo hacia dest en la formación actual, orientada hacia la marcha.
+     * Una sola unidad pide un camino A*; un grupo comparte un único campo de flujo.
+     */
+    public void orderMove(Array<Unit> group, Vector2 dest) {
+        orderMove(group, dest, formationShapes[0]);
+    }
+
+    private void orderMove(Array<Unit> group, Vector2 dest, FormationPlanner.Shape formationShape) {
+        if (group.size == 0) return;
+        GameEvents.MoveOrder event = null;
+        if (GameEvents.enabled) {
+            event = new GameEvents.MoveOrder();
+            event.begin();
+            event.units = group.size;
+        }
+        if (group.size == 1) {
+            Unit u = group.first();
+            u.followPath(pathService.request(u.getX(), u.getY(), dest.x, dest.y));
+            if (event != null) {
+                event.formation = "path";
+                event.commit();
+            }
+            return;
+        }
+        FlowField field = flowFields.get(dest.x, dest.y);
+        long planStart = event != null ? System.nanoTime() : 0L;
+        formations.plan(unitStore, group, dest.x, dest.y, formationShape);
+        for (int i = 0; i < group.size; i++) {
+            unitStore.setFlowTarget(group.get(i).getId(), field, formations.getSlotX(i), formations.getSlotY(i));
+        }
+        if (event != null) {
+            event.plannerNanos = System.nanoTime() - planStart;
+            event.formation = formationShape.name();
+            event.commit();
+        }
+    }
+
+    /** Añade a {@code out} las unidades dentro del rectángulo. */
+    public void selectInRect(Rectangle area, Array<Unit> out) {
+        GameEvents.SelectionQuery event = null;
+        if (GameEvents.enabled) {
+            event = new GameEvents.SelectionQuery();
+            event.begin();
+        }
+        int before = out.size;
+        unitQuery.clear();
+        unitGrid.queryPoints(area, unitQuery);
+        for (int i = 0; i < unitQuery.size; i++) {
+            Unit u = unitQuery.get(i);
+            if (area.contains(u.getX(), u.getY())) out.add(u);
+        }
+        if (event != null) {
+            event.kind = "rect";
+            event.candidates = unitQuery.size;
+            event.results = out.size - before;
+            event.commit();
+        }
+    }
+
+    /**
+     * Añade a los arrays de salida los edificios y unidades que tocan el área dada.
+     * Usa las rejillas espaciales: el coste depende de lo que hay en el área, no del mapa.
+     */
+    public void queryVisible(Rectangle area, Array<Building> buildingsOut, Array<Unit> unitsOut) {
+        buildingQuery.clear();
+        buildingGrid.query(area, buildingQuery);
+        for (int i = 0; i < buildingQuery.size; i++) {
+            Building b = buildingQuery.get(i);
+            if (b.getBounds().overlaps(area)) buildingsOut.add(b);
+        }
+        unitQuery.clear();
+        unitGrid.queryPoints(area, unitQuery);
+        for (int i = 0; i < unitQuery.size; i++) {
+            Unit u = unitQuery.get(i);
+            if (area.contains(u.getX(), u.getY())) unitsOut.add(u);
+        }
+    }
+
+    /** Unidad bajo el punto (la de mayor id, que es la que se dibuja encima), o null. */
+    public Unit pickUnit(float x, float y) {
+        GameEvents.SelectionQuery event = null;
+        if (GameEvents.enabled) {
+            event = new GameEvents.SelectionQuery();
+            event.begin();
+        }
+        float r = PICK_RADIUS;
+        pickArea.set(x - r, y - r, 2 * r, 2 * r);
+        unitQuery.clear();
+        unitGrid.queryPoints(pickArea, unitQuery);
+        Unit best = null;
+        for (int i = 0; i < unitQuery.size; i++) {
+            Unit u = unitQuery.get(i);
+            if (u.contains(x, y) && (best == null || u.getId() > best.getId())) best = u;
+        }
+        if (event != null) {
+            event.kind = "pick";
+            event.candidates = unitQuery.size;
+            event.results = best != null ? 1 : 0;
+            event.commit();
+        }
+        return best;
+    }
+
+    /** Edificio bajo el punto, o null. */
+    public Building pickBuilding(float x, float y) {
+        Array<Building> nearby = buildingGrid.cellAt(x, y);
+        for (int i = nearby.size - 1; i >= 0; i--) {
+            if (nearby.get(i).getBounds().contains(x, y)) return nearby.get(i);
+        }
+        return null;
+    }
+
+    public float getMapWidth() { return mapWidth; }
+    public float getMapHeight() { return mapHeight; }
+    public TerrainMap getTerrain() { return terrain; }
+    public UnitStore getUnitStore() { return unitStore; }
+    public Array<Unit> getUnits() { return units; }
+    public Array<Building> getBuildings() { return buildings; }
+    public SpatialGrid<Unit> getUnitGrid() { return unitGrid; }
+    public SpatialGrid<Building> getBuildingGrid() { return buildingGrid; }
+    public OccupancyGrid getOccupancy() { return occupancy; }
+    public FlowFieldCache getFlowFields() { return flowFields; }
+    public PathService getPathService() { return pathService; }
+    public SteeringSystem getSteering() { return steering; }
+    public FogOfWar getFog() { return fog; }
+    public int getPlayerCount() { return players; }
+    public FormationPlanner.Shape getFormation(int player) { return formationShapes[player]; }
+    public void setFormation(int player, FormationPlanner.Shape shape) { formationShapes[player] = shape; }
+    public FormationPlanner.Shape getFormation() { return formationShapes[0]; }
+    public void setFormation(FormationPlanner.Shape shape) { formationShapes[0] = shape; }
+    /** Recursos (plástico) de cada jugador. */
+    public ResourceManager getResources(int player) { return resources[player]; }
+    public int getTick() { return tick; }
+    // Al cargar una partida guardada: sigue contando desde donde se guardó
+    void restoreTick(int tick) { this.tick = tick; }
+    public Bulldozer getBulldozer(int player) { return playerBulldozers[player]; }
+    public Bulldozer getBulldozer() { return playerBulldozers[0]; }
+    public Array<Bulldozer> getBulldozers() { return bulldozers; }
+
+    /** Activa o desactiva el reparto entre núcleos (el resultado es el mismo). */
+    public void setParallel(boolean parallel) { this.parallel = parallel; }
+    public boolean isParallel() { return parallel; }
+
+    /** Medición por sistema (null = sin medir). */
+    public void setProfiler(FrameProfiler profiler) { this.profiler = profiler; }
+
+    /** Devuelve al registro las texturas que las entidades llegaron a pedir y cierra el mapa en disco. */
+    public void dispose() {
+        for (Unit u : units) u.dispose();
+        for (Building b : buildings) b.dispose();
+        terrain.close();
+    }
+}
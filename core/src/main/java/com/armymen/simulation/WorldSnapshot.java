@@ -0,0 +1,323 @@
+package com.armymen.simulation;
+
+import com.armymen.entities.Building;
+import com.armymen.entities.Bulldozer;
+import com.armymen.entities.Unit;
+import com.armymen.systems.FlowField;
+import com.armymen.systems.FormationPlanner;
+import com.armymen.systems.MapFile;
+import com.armymen.systems.TerrainMap;
+import com.armymen.systems.UnitStore;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Partida guardada en binario: una cabecera (con el tick), un registro por jugador, las casillas del
+ * terreno (un byte cada una, o la ruta del {@link MapFile} si el mapa está en disco) y después registros de ancho fijo (edificios, unidades,
+ * obras de los bulldozers) y lo explorado de la niebla de cada jugador, sin textos ni reflexión.
+ * Se escribe y se lee de una vez con un FileChannel sobre un buffer directo reutilizado
+ * (sin mapear el fichero: un fichero mapeado no se puede reemplazar en Windows hasta que
+ * el GC suelta el mapeo); la carga va registro a registro creando sólo las entidades,
+ * sin grafo de objetos intermedio.
+ *
+ * Los caminos A* y los campos de flujo no se guardan: se guarda hacia dónde iban
+ * y al cargar se vuelven a pedir (los campos de un mismo destino se comparten).
+ */
+public final class WorldSnapshot {
+
+    public static final int MAGIC = 0x414D5356;   // "AMSV"
+    public static final int VERSION = 5;
+
+    private static final int HEADER_BYTES = 12 * 4;
+    private static final int PLAYER_BYTES = 2 * 4;       // plástico, formación
+    private static final int BUILDING_BYTES = 3 * 4;     // tipo, x, y
+    private static final int UNIT_BYTES = 10 * 4;        // tipo, dueño, x, y, target, goal, speed, nav
+    private static final int BULLDOZER_BYTES = 5 * 4;    // id, estado, timer, obra x/y
+    private static final int FOG_WORD_BYTES = 8;         // por jugador: palabras de la máscara de explorado
+
+    private static final int UNIT_SOLDIER = 0, UNIT_BULLDOZER = 1;
+    private static final int NAV_NONE = -1, NAV_PATH = -2;   // >= 0: celda destino del campo de flujo
+    private static final int MOVING_TO_BUILD = 1, CONSTRUCTING = 2;
+
+    // Tipos de edificio por índice (el fichero guarda el índice, no la ruta de la textura)
+    private static final String[] BUILDING_TEXTURES = { GameWorld.STORAGE_TEXTURE };
+
+    // Buffer de save()/load(); crece según la partida y no se suelta
+    private static ByteBuffer io;
+
+    private WorldSnapshot() {}
+
+    /** Guarda el mundo en {@code file}. Se escribe a un temporal y se renombra al final. */
+    public static synchronized void save(GameWorld world, Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buf = ioBuffer(byteSize(world), file);
+        write(world, buf);
+        buf.flip();
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buf.hasRemaining()) ch.write(buf);
+                ch.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo guardar la partida en " + file, e);
+        }
+    }
+
+    /** Crea un mundo nuevo con el contenido de {@code file}. */
+    public static synchronized GameWorld load(Path file) {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ioBuffer(ch.size(), file);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) throw corrupt(file.toString(), "fichero truncado");
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo cargar la partida " + file, e);
+        }
+        buf.flip();
+        return read(buf, file.toString());
+    }
+
+    // El buffer reutilizado, vacío y con límite en 'bytes'
+    private static ByteBuffer ioBuffer(long bytes, Path file) {
+        if (bytes > Integer.MAX_VALUE) throw new GdxRuntimeException("Partida demasiado grande (" + bytes + " bytes): " + file);
+        if (io == null || io.capacity() < bytes) {
+            long grown = io == null ? bytes : Math.max(bytes, io.capacity() + (long) io.capacity() / 2);
+            io = ByteBuffer.allocateDirect((int) Math.min(grown, Integer.MAX_VALUE));
+        }
+        io.clear();
+        io.limit((int) bytes);
+        return io;
+    }
+
+    /** Bytes que ocupa el mundo en este formato. */
+    public static long byteSize(GameWorld world) {
+        return HEADER_BYTES + (long) world.getPlayerCount() * PLAYER_BYTES + terrainBytes(terrainLength(world.getTerrain()))
+            + (long) world.getBuildings().size * BUILDING_BYTES
+            + (long) world.getUnits().size * UNIT_BYTES + (long) world.getBulldozers().size * BULLDOZER_BYTES
+            + (long) world.getPlayerCount() * world.getFog().getExploredWords() * FOG_WORD_BYTES;
+    }
+
+    /** Escribe el mundo desde la posición actual de {@code buf} (debe caber {@link #byteSize}). */
+    public static void write(GameWorld world, ByteBuffer buf) {
+        UnitStore store = world.getUnitStore();
+        Array<Unit> units = world.getUnits();
+        Array<Building> buildings = world.getBuildings();
+        Array<Bulldozer> bulldozers = world.getBulldozers();
+        TerrainMap terrain = world.getTerrain();
+        byte[] mapPath = mapPath(terrain);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.putInt(MAGIC).putInt(VERSION).putInt(world.getTick())
+            .putFloat(world.getMapWidth()).putFloat(world.getMapHeight()).putFloat(terrain.getTileSize())
+            .putInt(mapPath.length)
+            .putInt(world.getPlayerCount())
+            .putInt(buildings.size).putInt(units.size).putInt(bulldozers.size)
+            .putInt(world.getFog().getExploredWords());
+
+        for (int p = 0; p < world.getPlayerCount(); p++) {
+            buf.putInt(world.getResources(p).getPlastic()).putInt(world.getFormation(p).ordinal());
+        }
+
+        // Casillas (o ruta del mapa) y relleno hasta múltiplo de 4 (los registros siguientes quedan alineados)
+        if (mapPath.length > 0) buf.put(mapPath);
+        else terrain.writeTiles(buf);
+        int length = terrainLength(terrain);
+        for (long i = length; i < terrainBytes(length); i++) buf.put((byte) 0);
+
+        for (int i = 0; i < buildings.size; i++) {
+            Building b = buildings.get(i);
+            buf.putInt(buildingType(b.getTexturePath()))
+                .putFloat(b.getPosition().x).putFloat(b.getPosition().y);
+        }
+
+        for (int i = 0; i < units.size; i++) {
+            buf.putInt(units.get(i) instanceof Bulldozer ? UNIT_BULLDOZER : UNIT_SOLDIER)
+                .putInt(store.owner[i])
+                .putFloat(store.x[i]).putFloat(store.y[i])
+                .putFloat(store.targetX[i]).putFloat(store.targetY[i])
+                .putFloat(store.goalX[i]).putFloat(store.goalY[i])
+                .putFloat(store.speed[i])
+                .putInt(navOf(store, i));
+        }
+
+        for (int i = 0; i < bulldozers.size; i++) {
+            Bulldozer b = bulldozers.get(i);
+            Vector2 pending = b.getPendingBuildPos();
+            int state = (b.isMovingToBuild() ? MOVING_TO_BUILD : 0) | (b.isConstructing() ? CONSTRUCTING : 0);
+            buf.putInt(b.getId()).putInt(state).putFloat(b.getBuildTimer())
+                .putFloat(pending != null ? pending.x : 0f).putFloat(pending != null ? pending.y : 0f);
+        }
+
+        for (int p = 0; p < world.getPlayerCount(); p++) world.getFog().writeExplored(p, buf);
+    }
+
+    /**
+     * Crea un mundo con el contenido de {@code buf}, que debe ir de la posición actual
+     * hasta el límite exactamente. {@code source} sólo se usa en los mensajes de error.
+     */
+    public static GameWorld read(ByteBuffer buf, String source) {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.remaining() < HEADER_BYTES) throw corrupt(source, "fichero demasiado corto");
+        if (buf.getInt() != MAGIC) throw corrupt(source, "no es una partida guardada");
+        int version = buf.getInt();
+        if (version != VERSION) throw corrupt(source, "versión " + version + " no soportada");
+
+        int tick = buf.getInt();
+        float mapWidth = buf.getFloat(), mapHeight = buf.getFloat(), tileSize = buf.getFloat();
+        int mapPathBytes = buf.getInt();
+        int players = buf.getInt();
+        int buildingCount = buf.getInt(), unitCount = buf.getInt(), bulldozerCount = buf.getInt();
+        int fogWords = buf.getInt();
+        if (tick < 0) throw corrupt(source, "tick " + tick);
+        if (players < 1 || players > GameWorld.MAX_PLAYERS) throw corrupt(source, "jugadores " + players);
+        if (!(mapWidth > 0f && mapHeight > 0f && tileSize > 0f)) throw corrupt(source, "tamaño de mapa");
+        if (mapPathBytes < 0) throw corrupt(source, "ruta del mapa");
+        long tiles = (long) Math.max(1, (int) Math.ceil(mapWidth / tileSize)) * Math.max(1, (int) Math.ceil(mapHeight / tileSize));
+        long expected = HEADER_BYTES + (long) players * PLAYER_BYTES + terrainBytes(mapPathBytes > 0 ? mapPathBytes : tiles)
+            + (long) buildingCount * BUILDING_BYTES
+            + (long) unitCount * UNIT_BYTES + (long) bulldozerCount * BULLDOZER_BYTES
+            + (long) players * fogWords * FOG_WORD_BYTES;
+        if (buildingCount < 0 || unitCount < 0 || bulldozerCount < 0 || fogWords < 0 || expected != buf.remaining() + HEADER_BYTES) {
+            throw corrupt(source, "tamaño no coincide con la cabecera");
+        }
+
+        GameWorld world;
+        if (mapPathBytes > 0) {
+            // Mapa en disco: se vuelve a abrir (el hormigón de los edificios se repinta al añadirlos).
+            // La ruta va detrás de los registros de jugador: se lee sin mover la posición
+            byte[] path = new byte[mapPathBytes];
+            buf.get(buf.position() + players * PLAYER_BYTES, path);
+            world = GameWorld.onMapFile(Paths.get(new String(path, StandardCharsets.UTF_8)), 0, unitCount, players);
+            TerrainMap terrain = world.getTerrain();
+            if (terrain.getWidth() != mapWidth || terrain.getHeight() != mapHeight || terrain.getTileSize() != tileSize) {
+                world.dispose();
+                throw corrupt(source, "el mapa " + terrain.getSource().getPath() + " ha cambiado");
+            }
+        } else {
+            TerrainMap terrain = new TerrainMap(mapWidth, mapHeight, tileSize);
+            world = new GameWorld(terrain, 0, unitCount, players);
+        }
+        if (world.getFog().getExploredWords() != fogWords) {
+            world.dispose();
+            throw corrupt(source, "niebla de otro tamaño");
+        }
+        FormationPlanner.Shape[] shapes = FormationPlanner.Shape.values();
+        for (int p = 0; p < players; p++) {
+            world.getResources(p).add(buf.getInt());
+            int formation = buf.getInt();
+            if (formation < 0 || formation >= shapes.length) throw corrupt(source, "formación desconocida");
+            world.setFormation(p, shapes[formation]);
+        }
+        if (mapPathBytes > 0) {
+            buf.position(buf.position() + (int) terrainBytes(mapPathBytes));   // la ruta ya se leyó
+        } else {
+            TerrainMap terrain = world.getTerrain();
+            if (!terrain.readTiles(buf)) throw corrupt(source, "tipo de terreno desconocido");
+            buf.position(buf.position() + (int) (terrainBytes(terrain.getTileCount()) - terrain.getTileCount()));
+        }
+        world.getUnits().ensureCapacity(unitCount);
+        world.getBuildings().ensureCapacity(buildingCount);
+
+        // Primero los edificios: así los campos de flujo se calculan ya con todos los obstáculos
+        for (int i = 0; i < buildingCount; i++) {
+            int type = buf.getInt();
+            if (type < 0 || type >= BUILDING_TEXTURES.length) throw corrupt(source, "tipo de edificio " + type);
+            float x = buf.getFloat(), y = buf.getFloat();
+            world.addBuilding(new Building(new Vector2(x, y), BUILDING_TEXTURES[type]));
+        }
+
+        UnitStore store = world.getUnitStore();
+        for (int i = 0; i < unitCount; i++) {
+            int type = buf.getInt();
+            int owner = buf.getInt();
+            if (owner < 0 || owner >= players) throw corrupt(source, "dueño " + owner);
+            float x = buf.getFloat(), y = buf.getFloat();
+            Unit u;
+            if (type == UNIT_BULLDOZER) u = world.spawnBulldozer(x, y, owner);
+            else if (type == UNIT_SOLDIER) u = world.spawnUnit(x, y, owner);
+            else throw corrupt(source, "tipo de unidad " + type);
+
+            int id = u.getId();
+            store.targetX[id] = buf.getFloat();
+            store.targetY[id] = buf.getFloat();
+            store.goalX[id] = buf.getFloat();
+            store.goalY[id] = buf.getFloat();
+            store.speed[id] = buf.getFloat();
+            int nav = buf.getInt();
+            if (nav == NAV_PATH) {
+                // El camino se vuelve a calcular hacia el mismo destino
+                u.followPath(world.getPathService().request(x, y, store.goalX[id], store.goalY[id]));
+            } else if (nav >= 0) {
+                if (nav >= world.getOccupancy().getCellCount()) throw corrupt(source, "celda " + nav);
+                FlowField field = world.getFlowFields().get(
+                    world.getOccupancy().centerX(nav), world.getOccupancy().centerY(nav));
+                store.setFlowTarget(id, field, store.goalX[id], store.goalY[id]);
+            }
+        }
+
+        for (int i = 0; i < bulldozerCount; i++) {
+            int id = buf.getInt();
+            int state = buf.getInt();
+            float timer = buf.getFloat(), px = buf.getFloat(), py = buf.getFloat();
+            if (id < 0 || id >= unitCount || !(world.getUnits().get(id) instanceof Bulldozer)) {
+                throw corrupt(source, "bulldozer " + id);
+            }
+            Bulldozer b = (Bulldozer) world.getUnits().get(id);
+            b.restoreBuild((state & MOVING_TO_BUILD) != 0, (state & CONSTRUCTING) != 0, timer, px, py);
+            // La obra en curso vuelve a reservar su hueco
+            if (b.isBusy()) world.getOccupancy().reserve(world.footprintAt(px, py));
+        }
+
+        for (int p = 0; p < players; p++) world.getFog().readExplored(p, buf);
+        world.restoreTick(tick);
+        return world;
+    }
+
+    private static long terrainBytes(long length) {
+        return (length + 3) & ~3L;
+    }
+
+    // Bytes de la sección de terreno sin relleno: la ruta del mapa en disco o una casilla por byte
+    private static int terrainLength(TerrainMap terrain) {
+        return terrain.isStreamed() ? mapPath(terrain).length : terrain.getTileCount();
+    }
+
+    private static byte[] mapPath(TerrainMap terrain) {
+        if (!terrain.isStreamed()) return new byte[0];
+        return terrain.getSource().getPath().toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int navOf(UnitStore store, int id) {
+        if (store.path[id] != null) return NAV_PATH;
+        FlowField f = store.flow[id];
+        return f != null ? f.getGoalCell() : NAV_NONE;
+    }
+
+    private static int buildingType(String texturePath) {
+        for (int i = 0; i < BUILDING_TEXTURES.length; i++) {
+            if (BUILDING_TEXTURES[i].equals(texturePath)) return i;
+        }
+        throw new GdxRuntimeException("Edificio sin tipo de guardado: " + texturePath);
+    }
+
+    private static GdxRuntimeException corrupt(String source, String reason) {
+        return new GdxRuntimeException("Partida no válida " + source + ": " + reason);
+    }
+}
@@ -0,0 +1,82 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.SkinLoader;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Lista de recursos del juego, leída de {@code assets.txt} (la genera la tarea
+ * {@code generateAssetList} de Gradle) y encolada en un {@link AssetManager}.
+ * Los sprites se cargan como Pixmap (se decodifican en segundo plano) y luego
+ * {@link TextureRegistry} los empaqueta en el atlas del mundo.
+ */
+public class AssetManifest {
+
+    public static final String MANIFEST = "assets.txt";
+    public static final String SKIN = "uiskin.json";
+
+    // Si no hay manifiesto (p. ej. ejecutando desde el IDE sin Gradle) se carga lo mínimo
+    private static final String[] FALLBACK = {
+        "building_storage.png", "bulldozer.png", "soldier.png", "uiskin.atlas", "uiskin.json", "uiskin.png"
+    };
+
+    private final Array<String> sprites = new Array<>();
+
+    /** Lee el manifiesto y encola cada recurso según su extensión. */
+    public void queue(AssetManager assets) {
+        Array<String> files = readManifest();
+
+        // Las .png que son páginas de un .atlas las carga el propio atlas
+        ObjectSet<String> atlases = new ObjectSet<>();
+        for (String f : files) if (f.endsWith(".atlas")) atlases.add(baseName(f));
+
+        for (String f : files) {
+            String base = baseName(f);
+            if (f.endsWith(".png")) {
+                if (atlases.contains(base)) continue;
+                assets.load(f, Pixmap.class);
+                sprites.add(f);
+            } else if (f.endsWith(".atlas")) {
+                assets.load(f, TextureAtlas.class);
+            } else if (f.endsWith(".json") && atlases.contains(base)) {
+                assets.load(f, Skin.class, new SkinLoader.SkinParameter(base + ".atlas"));
+            } else if (f.endsWith(".fnt")) {
+                assets.load(f, BitmapFont.class);
+            } else if (f.endsWith(".wav") || f.endsWith(".ogg") || f.endsWith(".mp3")) {
+                assets.load(f, Sound.class);
+            }
+        }
+    }
+
+    /** Sprites sueltos del manifiesto (para empaquetarlos en el atlas al terminar la carga). */
+    public Array<String> getSprites() {
+        return sprites;
+    }
+
+    private static Array<String> readManifest() {
+        Array<String> files = new Array<>();
+        FileHandle manifest = Gdx.files.internal(MANIFEST);
+        if (!manifest.exists()) {
+            files.addAll(FALLBACK);
+            return files;
+        }
+        for (String line : manifest.readString("UTF-8").split("\n")) {
+            String f = line.trim().replace('\\', '/');
+            if (!f.isEmpty() && !f.equals(MANIFEST)) files.add(f);
+        }
+        return files;
+    }
+
+    private static String baseName(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot < 0 ? path : path.substring(0, dot);
+    }
+}
@@ -0,0 +1,238 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Carga y descarga los trozos de un {@link TerrainMap} abierto de un {@link MapFile}.
+ *
+ * Cada frame el hilo principal pide las zonas que necesita (la cámara y alrededor de las
+ * unidades que se mueven); los trozos que faltan se leen en un hilo aparte y se instalan en
+ * {@link #update()}, así que nada en el hilo principal espera al disco. Mientras tanto
+ * el trozo se ve como césped (o como estaba, si ya se había dibujado).
+ *
+ * La memoria está acotada: como mucho {@code budgetBytes / CHUNK_BYTES} arrays de trozo,
+ * reutilizados. Cuando no quedan, se descarga el trozo que lleva más tiempo sin pedirse
+ * (LRU), nunca uno pedido en el frame actual. Los trozos editados no se descargan y dejan
+ * de contar en el presupuesto.
+ *
+ * Los trozos instalados van en una lista doblemente enlazada sobre arrays de índices: pedir
+ * uno lo pasa al principio y se descarga por el final, las dos cosas en O(1). Todo lo pedido
+ * en este frame queda por delante de lo que no, así que si el último se pidió en este
+ * frame no hay nada que descargar.
+ */
+public class ChunkStreamer implements Disposable {
+
+    // Lectura pendiente: el array viaja al hilo de carga y vuelve lleno
+    private static final class Load {
+        final int chunk;
+        final byte[] data;
+
+        Load(int chunk, byte[] data) {
+            this.chunk = chunk;
+            this.data = data;
+        }
+    }
+
+    private final TerrainMap map;
+    private final MapFile source;
+    private final int maxChunks;
+    private final float chunkSize;
+    private final long[] lastUsed;          // último frame en que se pidió cada trozo
+    private final boolean[] pending;
+    // Trozos instalados por aquí, del pedido más recientemente (head) al que más lleva sin pedirse (tail)
+    private final int[] prevChunk, nextChunk;
+    private final boolean[] linked;
+    private int head = -1, tail = -1;
+    private int residentCount;
+    private final Array<byte[]> pool = new Array<>(false, 16);
+    private int allocated;                  // arrays creados: instalados, en cola o en el pool
+
+    private final LinkedBlockingDeque<Load> requests = new LinkedBlockingDeque<>();
+    private final ConcurrentLinkedQueue<Load> loaded = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile RuntimeException failure;
+
+    private long frame = 1;
+    private int pendingCount;
+    private int missing;                    // trozos pedidos con prisa que aún no estaban
+    private int lastMissing;                // los del último frame, fijados en update()
+    private long loadedTotal;
+    private long evictedTotal;
+    private long skippedTotal;              // peticiones sin array libre (se repiten el frame siguiente)
+
+    public ChunkStreamer(TerrainMap map, long budgetBytes) {
+        if (!map.isStreamed()) throw new IllegalArgumentException("El terreno está entero en memoria");
+        this.map = map;
+        this.source = map.getSource();
+        this.maxChunks = (int) Math.max(1, Math.min(map.getChunkCount(), budgetBytes / TerrainMap.CHUNK_BYTES));
+        this.chunkSize = TerrainMap.CHUNK_TILES * map.getTileSize();
+        this.lastUsed = new long[map.getChunkCount()];
+        this.pending = new boolean[map.getChunkCount()];
+        this.prevChunk = new int[map.getChunkCount()];
+        this.nextChunk = new int[map.getChunkCount()];
+        this.linked = new boolean[map.getChunkCount()];
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        }, "map-streamer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Hilo de carga: sólo lee del fichero a arrays que nadie más toca hasta que vuelven
+    private void load() {
+        try {
+            while (running) {
+                Load load = requests.take();
+                source.readChunk(load.chunk, load.data);
+                loaded.add(load);
+            }
+        } catch (InterruptedException e) {
+            // dispose()
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Pide los trozos que toca {@code area} (en unidades del mundo). Los urgentes (lo que
+     * ve la cámara) se leen antes que todo lo demás.
+     */
+    public void requestArea(Rectangle area, boolean urgent) {
+        int cx0 = clamp((int) Math.floor(area.x / chunkSize), map.getChunksX());
+        int cx1 = clamp((int) Math.floor((area.x + area.width) / chunkSize), map.getChunksX());
+        int cy0 = clamp((int) Math.floor(area.y / chunkSize), map.getChunksY());
+        int cy1 = clamp((int) Math.floor((area.y + area.height) / chunkSize), map.getChunksY());
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int chunk = cy * map.getChunksX() + cx;
+                if (urgent && !map.isResident(chunk)) missing++;
+                request(chunk, urgent);
+            }
+        }
+    }
+
+    /** Pide el trozo de cada unidad que se está moviendo y el de su destino. */
+    public void requestAroundUnits(UnitStore store) {
+        int count = store.size();
+        for (int id = 0; id < count; id++) {
+            if (store.x[id] == store.goalX[id] && store.y[id] == store.goalY[id]) continue;
+            request(chunkAt(store.x[id], store.y[id]), false);
+            request(chunkAt(store.goalX[id], store.goalY[id]), false);
+        }
+    }
+
+    private void request(int chunk, boolean urgent) {
+        lastUsed[chunk] = frame;
+        if (linked[chunk] && chunk != head) {
+            unlink(chunk);
+            link(chunk);
+        }
+        if (pending[chunk] || map.isResident(chunk)) return;
+        byte[] data = obtain();
+        if (data == null) {
+            skippedTotal++;
+            return;
+        }
+        pending[chunk] = true;
+        pendingCount++;
+        Load load = new Load(chunk, data);
+        if (urgent) requests.offerFirst(load);
+        else requests.offerLast(load);
+    }
+
+    // Array para una lectura: del pool, nuevo si cabe en el presupuesto o quitándoselo al trozo LRU
+    private byte[] obtain() {
+        if (pool.size > 0) return pool.pop();
+        if (allocated < maxChunks) {
+            allocated++;
+            return new byte[TerrainMap.CHUNK_BYTES];
+        }
+        while (tail >= 0 && lastUsed[tail] < frame) {
+            int oldest = tail;
+            unlink(oldest);
+            byte[] data = map.evict(oldest);
+            if (data != null) {
+                evictedTotal++;
+                return data;
+            }
+            allocated--;   // lo han editado: ahora es del mapa
+        }
+        return null;
+    }
+
+    // Al principio de la lista
+    private void link(int chunk) {
+        prevChunk[chunk] = -1;
+        nextChunk[chunk] = head;
+        if (head >= 0) prevChunk[head] = chunk;
+        else tail = chunk;
+        head = chunk;
+        linked[chunk] = true;
+        residentCount++;
+    }
+
+    private void unlink(int chunk) {
+        int prev = prevChunk[chunk], next = nextChunk[chunk];
+        if (prev >= 0) nextChunk[prev] = next;
+        else head = next;
+        if (next >= 0) prevChunk[next] = prev;
+        else tail = prev;
+        linked[chunk] = false;
+        residentCount--;
+    }
+
+    /** Instala los trozos ya leídos y cierra el frame. No bloquea. */
+    public void update() {
+        RuntimeException error = failure;
+        if (error != null) throw new GdxRuntimeException("Falló la carga del mapa " + source.getPath(), error);
+        Load load;
+        while ((load = loaded.poll()) != null) {
+            pending[load.chunk] = false;
+            pendingCount--;
+            if (map.install(load.chunk, load.data)) link(load.chunk);
+            else pool.add(load.data);   // se cargó entretanto al editarlo
+            loadedTotal++;
+        }
+        lastMissing = missing;
+        missing = 0;
+        frame++;
+    }
+
+    private int chunkAt(float x, float y) {
+        int cx = clamp((int) (x / chunkSize), map.getChunksX());
+        int cy = clamp((int) (y / chunkSize), map.getChunksY());
+        return cy * map.getChunksX() + cx;
+    }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : v >= size ? size - 1 : v;
+    }
+
+    /** Trozos pedidos con prisa en el último frame (hasta su update()) que todavía no estaban cargados. */
+    public int getMissing() { return lastMissing; }
+    public int getPending() { return pendingCount; }
+    public int getResident() { return residentCount; }
+    public int getBudgetChunks() { return maxChunks; }
+    public long getLoadedTotal() { return loadedTotal; }
+    public long getEvictedTotal() { return evictedTotal; }
+    public long getSkippedTotal() { return skippedTotal; }
+
+    /** Para el hilo de carga; las lecturas que queden en cola se descartan. */
+    @Override
+    public void dispose() {
+        running = false;
+        thread.interrupt();
+        requests.clear();
+    }
+}
@@ -0,0 +1,51 @@
+package com.armymen.systems;
+
+/**
+ * Reloj de paso fijo para la simulación.
+ * Acumula el tiempo real de cada frame y dice cuántos ticks fijos hay que
+ * simular; lo que sobra se usa como factor de interpolación para dibujar.
+ * Si un frame se atrasa demasiado se limita el número de ticks de recuperación
+ * y se descarta el resto (evita la "espiral de la muerte").
+ */
+public class FixedTimestep {
+
+    private final float step;
+    private final int maxStepsPerFrame;
+    private float accumulator;
+    private float alpha;
+    private long tick;
+    private int droppedSteps;
+
+    public FixedTimestep(float ticksPerSecond, int maxStepsPerFrame) {
+        this.step = 1f / ticksPerSecond;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /** Añade el tiempo del frame y devuelve cuántos ticks hay que simular ahora. */
+    public int advance(float frameDelta) {
+        accumulator += frameDelta;
+        int steps = (int) (accumulator / step);
+        if (steps > maxStepsPerFrame) {
+            // Demasiado atraso: simulamos el máximo y olvidamos el resto
+            droppedSteps += steps - maxStepsPerFrame;
+            steps = maxStepsPerFrame;
+            accumulator = steps * step + (accumulator % step);
+        }
+        accumulator -= steps * step;
+        tick += steps;
+        alpha = accumulator / step;
+        return steps;
+    }
+
+    /** Duración de un tick en segundos. */
+    public float getStep() { return step; }
+
+    /** Fracción [0, 1) entre el tick anterior y el actual, para interpolar al dibujar. */
+    public float getAlpha() { return alpha; }
+
+    /** Número de ticks simulados desde el inicio. */
+    public long getTick() { return tick; }
+
+    /** Ticks descartados por atraso (la simulación no pudo seguir el ritmo). */
+    public int getDroppedSteps() { return droppedSteps; }
+}
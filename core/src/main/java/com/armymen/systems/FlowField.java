@@ -0,0 +1,243 @@
+package com.armymen.systems;
+
+import java.util.Arrays;
+
+/**
+ * Campo de flujo hacia un destino sobre la rejilla de ocupación.
+ * Se calcula una vez (Dijkstra desde el destino = campo de integración) y luego
+ * cada celda guarda la celda vecina por la que seguir (campo de direcciones).
+ * Todas las unidades enviadas al mismo destino comparten el mismo campo.
+ *
+ * Cuando aparece un obstáculo el campo se repara en local ({@link #repair}): sólo se
+ * recalculan las celdas cuyo camino (la cadena de {@code next}) pasaba por las celdas
+ * tapadas. El resultado es el mismo que calcularlo de cero.
+ */
+public class FlowField {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    /** A este coste del destino la unidad deja el campo y va recta a su hueco. */
+    public static final int ARRIVE_COST = 30;
+
+    private static final int STRAIGHT = 10, DIAGONAL = 14;
+    private static final int[] DX = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DY = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+    private final OccupancyGrid grid;
+    private final int[] cost;
+    private final int[] next;       // celda siguiente hacia el destino, -1 si no hay
+    private long[] heap;            // (coste << 32 | celda), montículo binario
+    private int heapSize;
+    private int goalCell = -1;
+
+    // Reparación: celdas afectadas (marca == epoch) y cola del recorrido
+    private final int[] mark;
+    private int epoch;
+    private int[] queue = new int[64];
+
+    public FlowField(OccupancyGrid grid) {
+        this.grid = grid;
+        this.cost = new int[grid.getCellCount()];
+        this.next = new int[grid.getCellCount()];
+        this.mark = new int[grid.getCellCount()];
+        this.heap = new long[Math.max(16, grid.getCellCount())];
+    }
+
+    /** Recalcula el campo hacia la celda dada. */
+    public void build(int goal) {
+        this.goalCell = goal;
+        integrate();
+        buildDirections();
+    }
+
+    // Campo de integración: Dijkstra desde el destino, 8 vecinos, sin cortar esquinas
+    private void integrate() {
+        Arrays.fill(cost, UNREACHABLE);
+        heapSize = 0;
+        cost[goalCell] = 0;
+        push(0, goalCell);
+        propagate();
+    }
+
+    // Vacía el montículo relajando vecinos (sólo bajan las celdas sin coste o con uno peor)
+    private void propagate() {
+        final int cols = grid.getCols(), rows = grid.getRows();
+        while (heapSize > 0) {
+            long top = pop();
+            int c = (int) top;
+            int d = (int) (top >>> 32);
+            if (d > cost[c]) continue; // entrada vieja
+            int cx = c % cols, cy = c / cols;
+            for (int k = 0; k < 8; k++) {
+                int nx = cx + DX[k], ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int n = ny * cols + nx;
+                if (grid.isBlocked(n)) continue;
+                if (k >= 4 && (grid.isBlocked(cx + DX[k], cy) || grid.isBlocked(cx, cy + DY[k]))) continue;
+                int nd = d + (k < 4 ? STRAIGHT : DIAGONAL);
+                if (nd < cost[n]) {
+                    cost[n] = nd;
+                    push(nd, n);
+                }
+            }
+        }
+    }
+
+    // Campo de direcciones: cada celda apunta al vecino por el que le llegó su coste
+    // (el de menor coste + paso), así las cadenas de next son los caminos de Dijkstra
+    private void buildDirections() {
+        for (int c = 0; c < cost.length; c++) direction(c);
+    }
+
+    private void direction(int c) {
+        final int cols = grid.getCols(), rows = grid.getRows();
+        next[c] = -1;
+        if (cost[c] == UNREACHABLE || c == goalCell) return;
+        int cx = c % cols, cy = c / cols;
+        int best = UNREACHABLE;
+        for (int k = 0; k < 8; k++) {
+            int nx = cx + DX[k], ny = cy + DY[k];
+            if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+            if (k >= 4 && (grid.isBlocked(cx + DX[k], cy) || grid.isBlocked(cx, cy + DY[k]))) continue;
+            int n = ny * cols + nx;
+            if (cost[n] == UNREACHABLE) continue;
+            int d = cost[n] + (k < 4 ? STRAIGHT : DIAGONAL);
+            if (d < best) {
+                best = d;
+                next[c] = n;
+            }
+        }
+    }
+
+    /**
+     * Repara el campo tras bloquearse celdas del rango [x0..x1]x[y0..y1]. Las celdas cuyo
+     * camino no pasaba por ahí conservan coste y dirección (un obstáculo nuevo no acorta
+     * nada); el resto se vuelve a calcular con Dijkstra desde el borde de lo que sigue
+     * valiendo. Devuelve cuántas celdas se recalcularon (0 = el obstáculo no le afectaba).
+     */
+    public int repair(int x0, int y0, int x1, int y1) {
+        final int cols = grid.getCols(), rows = grid.getRows();
+        int gx = goalCell % cols, gy = goalCell / cols;
+        if (gx >= x0 && gx <= x1 && gy >= y0 && gy <= y1 && grid.isBlocked(goalCell)) {
+            build(goalCell);   // el destino quedó dentro del obstáculo
+            return cost.length;
+        }
+
+        // 1) Semillas: celdas tapadas que tenían camino y vecinas cuyo paso diagonal ya no vale
+        epoch++;
+        int count = 0;
+        for (int cy = Math.max(0, y0 - 1); cy <= Math.min(rows - 1, y1 + 1); cy++) {
+            for (int cx = Math.max(0, x0 - 1); cx <= Math.min(cols - 1, x1 + 1); cx++) {
+                int c = cy * cols + cx;
+                if (cost[c] == UNREACHABLE || c == goalCell) continue;
+                boolean hit = grid.isBlocked(c);
+                int n = next[c];
+                if (!hit && n >= 0) {
+                    int dx = n % cols - cx, dy = n / cols - cy;
+                    hit = dx != 0 && dy != 0 && (grid.isBlocked(cx + dx, cy) || grid.isBlocked(cx, cy + dy));
+                }
+                if (hit) count = enqueue(c, count);
+            }
+        }
+        if (count == 0) return 0;
+
+        // 2) Todo lo que llegaba al destino a través de ellas (sus "hijos" en la cadena de next)
+        for (int head = 0; head < count; head++) {
+            int c = queue[head];
+            int cx = c % cols, cy = c / cols;
+            for (int k = 0; k < 8; k++) {
+                int nx = cx + DX[k], ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int m = ny * cols + nx;
+                if (mark[m] != epoch && next[m] == c) count = enqueue(m, count);
+            }
+        }
+
+        // 3) Se olvidan y se vuelven a alcanzar desde las vecinas que siguen valiendo
+        for (int i = 0; i < count; i++) {
+            cost[queue[i]] = UNREACHABLE;
+            next[queue[i]] = -1;
+        }
+        heapSize = 0;
+        for (int i = 0; i < count; i++) {
+            int c = queue[i];
+            if (grid.isBlocked(c)) continue;
+            int cx = c % cols, cy = c / cols;
+            int best = UNREACHABLE;
+            for (int k = 0; k < 8; k++) {
+                int nx = cx + DX[k], ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int n = ny * cols + nx;
+                if (mark[n] == epoch || cost[n] == UNREACHABLE || grid.isBlocked(n)) continue;
+                if (k >= 4 && (grid.isBlocked(cx + DX[k], cy) || grid.isBlocked(cx, cy + DY[k]))) continue;
+                best = Math.min(best, cost[n] + (k < 4 ? STRAIGHT : DIAGONAL));
+            }
+            if (best < UNREACHABLE) {
+                cost[c] = best;
+                push(best, c);
+            }
+        }
+        propagate();
+        for (int i = 0; i < count; i++) direction(queue[i]);
+        return count;
+    }
+
+    private int enqueue(int cell, int count) {
+        if (count == queue.length) queue = Arrays.copyOf(queue, count * 2);
+        mark[cell] = epoch;
+        queue[count] = cell;
+        return count + 1;
+    }
+
+    /** Coste desde la celda hasta el destino ({@link #UNREACHABLE} si no hay camino). */
+    public int costAt(int cell) {
+        return cost[cell];
+    }
+
+    /**
+     * Coste hasta el que una unidad con el hueco en (x, y) sigue el campo: el de estar a la
+     * distancia de su hueco al destino (más {@link #ARRIVE_COST}). Antes el camino importa;
+     * después ya está dentro de la formación.
+     */
+    public int releaseCost(float x, float y) {
+        float dx = x - grid.centerX(goalCell), dy = y - grid.centerY(goalCell);
+        float cells = (float) Math.sqrt(dx * dx + dy * dy) / grid.getCellSize();
+        return ARRIVE_COST + (int) (cells * STRAIGHT);
+    }
+
+    /** Celda siguiente hacia el destino, o -1 (destino, bloqueada o inalcanzable). */
+    public int nextCell(int cell) {
+        return next[cell];
+    }
+
+    public OccupancyGrid getGrid() { return grid; }
+    public int getGoalCell() { return goalCell; }
+
+    private void push(int d, int cell) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heap.length * 2);
+        long v = ((long) d << 32) | cell;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= v) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = v;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,126 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Caché de campos de flujo recientes, uno por celda de destino, con expulsión LRU.
+ *
+ * Cuando aparece un obstáculo cada campo se repara en local ({@link FlowField#repair}):
+ * a los que no pasaban por las celdas tapadas no les cuesta nada.
+ *
+ * Los campos se reciclan: el expulsado se reutiliza para el destino nuevo si ninguna
+ * unidad lo sigue. Si aún tiene seguidores pasa a "retirados", donde se sigue reparando
+ * hasta que lo dejen, y entonces vuelve al pool.
+ */
+public class FlowFieldCache {
+
+    private final OccupancyGrid grid;
+    private final UnitStore store;
+    private final int capacity;
+    // Del más reciente (índice 0) al más antiguo
+    private final Array<FlowField> fields;
+    private final Array<FlowField> retired = new Array<>(false, 4);
+    private final Array<FlowField> pool = new Array<>(false, 4);
+    private final IntArray pending = new IntArray(true, 16);   // rangos x0,y0,x1,y1 tapados
+    private int builds;
+    private long repairedCells;
+
+    public FlowFieldCache(OccupancyGrid grid, UnitStore store, int capacity) {
+        this.grid = grid;
+        this.store = store;
+        this.capacity = capacity;
+        this.fields = new Array<>(true, capacity);
+    }
+
+    /** Campo hacia el punto dado: reutiliza uno de la caché o lo calcula. */
+    public FlowField get(float x, float y) {
+        repairPending();
+        int goal = grid.cellIndex(x, y);
+        for (int i = 0; i < fields.size; i++) {
+            FlowField f = fields.get(i);
+            if (f.getGoalCell() == goal) {
+                if (i > 0) {
+                    fields.removeIndex(i);
+                    fields.insert(0, f);
+                }
+                return f;
+            }
+        }
+        for (int i = 0; i < retired.size; i++) {
+            FlowField f = retired.get(i);
+            if (f.getGoalCell() == goal) {
+                retired.removeIndex(i);
+                insert(f);
+                return f;
+            }
+        }
+
+        FlowField f = obtain();
+        f.build(goal);
+        builds++;
+        insert(f);
+        return f;
+    }
+
+    private void insert(FlowField f) {
+        if (fields.size >= capacity) {
+            FlowField evicted = fields.pop();
+            retired.add(evicted);
+            recycleRetired();
+        }
+        fields.insert(0, f);
+    }
+
+    // Campo libre: del pool, el retirado que ya nadie sigue o uno nuevo
+    private FlowField obtain() {
+        if (pool.size == 0 && fields.size >= capacity) {
+            retired.add(fields.pop());
+            recycleRetired();
+        }
+        return pool.size > 0 ? pool.pop() : new FlowField(grid);
+    }
+
+    // Pasa al pool los retirados sin seguidores (una pasada por las unidades, sólo en fallos)
+    private void recycleRetired() {
+        if (retired.size == 0) return;
+        boolean[] followed = new boolean[retired.size];
+        FlowField[] flow = store.flow;
+        for (int id = 0, n = store.size(); id < n; id++) {
+            FlowField f = flow[id];
+            if (f == null) continue;
+            for (int i = 0; i < retired.size; i++) if (retired.get(i) == f) followed[i] = true;
+        }
+        for (int i = retired.size - 1; i >= 0; i--) {
+            if (followed[i]) continue;
+            FlowField f = retired.removeIndex(i);
+            if (pool.size < capacity) pool.add(f);
+        }
+    }
+
+    /** Un obstáculo nuevo tapó estas celdas: los campos se reparan antes de volver a leerse. */
+    public void onObstacleAdded(Rectangle bounds) {
+        pending.add(grid.col(bounds.x), grid.row(bounds.y));
+        pending.add(grid.col(bounds.x + bounds.width), grid.row(bounds.y + bounds.height));
+    }
+
+    /** Repara los campos (también los retirados) con los obstáculos nuevos. Llamar en el hilo principal antes de mover unidades. */
+    public void repairPending() {
+        if (pending.size == 0) return;
+        for (int r = 0; r < pending.size; r += 4) {
+            int x0 = pending.get(r), y0 = pending.get(r + 1), x1 = pending.get(r + 2), y1 = pending.get(r + 3);
+            for (int i = 0; i < fields.size; i++) repairedCells += fields.get(i).repair(x0, y0, x1, y1);
+            for (int i = 0; i < retired.size; i++) repairedCells += retired.get(i).repair(x0, y0, x1, y1);
+        }
+        pending.clear();
+    }
+
+    public int size() { return fields.size; }
+
+    /** Número total de cálculos completos de campo (para perfilar). */
+    public int getBuildCount() { return builds; }
+
+    /** Celdas recalculadas por reparaciones locales desde el principio. */
+    public long getRepairedCells() { return repairedCells; }
+}
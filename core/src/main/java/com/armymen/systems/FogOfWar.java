@@ -0,0 +1,190 @@
+package com.armymen.systems;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Niebla de guerra de cada jugador sobre una rejilla de celdas de {@code cellSize}.
+ *
+ * Cada celda lleva un contador de cuántas unidades del jugador la ven. Visible (contador
+ * mayor que cero) y explorada (alguna vez visible) se guardan además como bits en long[]
+ * para consultarlas con una prueba de bit. Una unidad sólo toca la rejilla cuando cambia de
+ * celda: quita su círculo de visión de la celda vieja y lo pone en la nueva; las quietas
+ * no cuestan nada.
+ *
+ * Cada cambio de visible o explorada marca su bloque de {@value #BLOCK}x{@value #BLOCK}
+ * celdas como sucio, por jugador, para que la textura de niebla sólo suba esos bloques.
+ */
+public class FogOfWar {
+
+    public static final int UNEXPLORED = 0, EXPLORED = 1, VISIBLE = 2;
+    public static final int BLOCK = 32;
+
+    private final float cellSize;
+    private final int cols, rows;
+    private final int blockCols, blockRows;
+    private final int[] discX, discY;       // celdas del círculo de visión respecto a la del centro
+
+    // Por jugador
+    private final int[][] counts;
+    private final long[][] visible;
+    private final long[][] explored;
+    private final long[][] dirty;           // bloques cambiados desde que se subieron
+
+    // Por unidad (id del UnitStore): celda donde está puesto su círculo (-1 ninguna) y de quién
+    private int[] unitCell = new int[0];
+    private int[] unitOwner = new int[0];
+    private long stamps;
+
+    public FogOfWar(float width, float height, float cellSize, float visionRadius, int players) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.blockCols = (cols + BLOCK - 1) / BLOCK;
+        this.blockRows = (rows + BLOCK - 1) / BLOCK;
+
+        // Celdas cuyo centro cae dentro del radio
+        int r = (int) Math.ceil(visionRadius / cellSize);
+        float r2 = (visionRadius / cellSize) * (visionRadius / cellSize);
+        int n = 0;
+        int[] xs = new int[(2 * r + 1) * (2 * r + 1)], ys = new int[xs.length];
+        for (int dy = -r; dy <= r; dy++)
+            for (int dx = -r; dx <= r; dx++)
+                if (dx * dx + dy * dy <= r2) {
+                    xs[n] = dx;
+                    ys[n++] = dy;
+                }
+        this.discX = Arrays.copyOf(xs, n);
+        this.discY = Arrays.copyOf(ys, n);
+
+        int words = (cols * rows + 63) >>> 6;
+        this.counts = new int[players][cols * rows];
+        this.visible = new long[players][words];
+        this.explored = new long[players][words];
+        this.dirty = new long[players][(blockCols * blockRows + 63) >>> 6];
+    }
+
+    /** Pone al día la visión de las unidades que han cambiado de celda desde la última vez. */
+    public void update(UnitStore store) {
+        int count = store.size();
+        if (count > unitCell.length) grow(Math.max(count, unitCell.length * 2));
+        for (int id = 0; id < count; id++) {
+            int cell = cellOf(store.x[id], store.y[id]);
+            int old = unitCell[id];
+            if (cell == old) continue;
+            if (old >= 0) stamp(unitOwner[id], old, -1);
+            stamp(store.owner[id], cell, 1);
+            unitCell[id] = cell;
+            unitOwner[id] = store.owner[id];
+        }
+    }
+
+    private void grow(int capacity) {
+        int from = unitCell.length;
+        unitCell = Arrays.copyOf(unitCell, capacity);
+        unitOwner = Arrays.copyOf(unitOwner, capacity);
+        Arrays.fill(unitCell, from, capacity, -1);
+    }
+
+    // Suma (o resta) el círculo de visión centrado en 'center'
+    private void stamp(int player, int center, int delta) {
+        int[] count = counts[player];
+        long[] vis = visible[player], exp = explored[player];
+        int cx = center % cols, cy = center / cols;
+        for (int i = 0; i < discX.length; i++) {
+            int x = cx + discX[i], y = cy + discY[i];
+            if (x < 0 || y < 0 || x >= cols || y >= rows) continue;
+            int cell = y * cols + x;
+            long bit = 1L << cell;
+            if (delta > 0) {
+                if (count[cell]++ > 0) continue;
+                vis[cell >>> 6] |= bit;
+                exp[cell >>> 6] |= bit;
+            } else {
+                if (--count[cell] > 0) continue;
+                vis[cell >>> 6] &= ~bit;
+            }
+            int block = (y / BLOCK) * blockCols + x / BLOCK;
+            dirty[player][block >>> 6] |= 1L << block;
+        }
+        stamps++;
+    }
+
+    public int cellOf(float x, float y) {
+        int c = (int) (x / cellSize), r = (int) (y / cellSize);
+        c = c < 0 ? 0 : c >= cols ? cols - 1 : c;
+        r = r < 0 ? 0 : r >= rows ? rows - 1 : r;
+        return r * cols + c;
+    }
+
+    public boolean isVisible(int player, int cell) {
+        return (visible[player][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean isExplored(int player, int cell) {
+        return (explored[player][cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean isVisible(int player, float x, float y) {
+        return isVisible(player, cellOf(x, y));
+    }
+
+    public boolean isExplored(int player, float x, float y) {
+        return isExplored(player, cellOf(x, y));
+    }
+
+    /** {@link #UNEXPLORED}, {@link #EXPLORED} o {@link #VISIBLE}. */
+    public int getState(int player, int cell) {
+        return isVisible(player, cell) ? VISIBLE : isExplored(player, cell) ? EXPLORED : UNEXPLORED;
+    }
+
+    /** Primer bloque sucio del jugador desde {@code from} (índice = fila * bloques por fila + columna), o -1. */
+    public int nextDirtyBlock(int player, int from) {
+        long[] bits = dirty[player];
+        int word = from >>> 6;
+        if (word >= bits.length) return -1;
+        long w = bits[word] & (-1L << from);
+        while (true) {
+            if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+            if (++word == bits.length) return -1;
+            w = bits[word];
+        }
+    }
+
+    public void clearDirtyBlock(int player, int block) {
+        dirty[player][block >>> 6] &= ~(1L << block);
+    }
+
+    /** Palabras de 64 bits de la máscara de explorado de cada jugador. */
+    public int getExploredWords() { return explored[0].length; }
+
+    /** Escribe lo explorado por el jugador ({@link #getExploredWords()} longs) para guardarlo. */
+    public void writeExplored(int player, ByteBuffer out) {
+        long[] exp = explored[player];
+        for (int i = 0; i < exp.length; i++) out.putLong(exp[i]);
+    }
+
+    /**
+     * Añade lo explorado guardado (al cargar) a lo que ya se vea y marca sucia toda la
+     * niebla del jugador para que se vuelva a subir.
+     */
+    public void readExplored(int player, ByteBuffer in) {
+        long[] exp = explored[player];
+        for (int i = 0; i < exp.length; i++) exp[i] |= in.getLong();
+        int cells = cols * rows;
+        if ((cells & 63) != 0) exp[exp.length - 1] &= (1L << cells) - 1;   // bits de fuera del mapa
+        long[] bits = dirty[player];
+        int blocks = blockCols * blockRows;
+        Arrays.fill(bits, -1L);
+        if ((blocks & 63) != 0) bits[bits.length - 1] = (1L << blocks) - 1;
+    }
+
+    public float getCellSize() { return cellSize; }
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getBlockCols() { return blockCols; }
+    public int getBlockRows() { return blockRows; }
+    public int getPlayerCount() { return counts.length; }
+    /** Círculos puestos o quitados desde el principio (cada cambio de celda son dos). */
+    public long getStampCount() { return stamps; }
+}
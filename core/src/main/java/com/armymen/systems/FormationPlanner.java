@@ -0,0 +1,157 @@
+package com.armymen.systems;
+
+import com.armymen.entities.Unit;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Arrays;
+
+/**
+ * Calcula los huecos de una formación (caja, línea o cuña) del tamaño del grupo,
+ * orientada hacia donde se mueve, y reparte las unidades entre ellos.
+ *
+ * El reparto es voraz sobre un orden espacial: las unidades más adelantadas ocupan
+ * las primeras filas y, dentro de cada fila, se asignan de izquierda a derecha.
+ * Son dos ordenaciones, O(n log n), y así casi nadie se cruza con otra al avanzar.
+ * Los arrays se reutilizan entre órdenes: no se crea basura salvo si el grupo crece.
+ */
+public class FormationPlanner {
+
+    public enum Shape { BOX, LINE, WEDGE }
+
+    private static final float BOX_ASPECT = 2f;   // la caja es el doble de ancha que de profunda
+    private static final int LINE_MAX_WIDTH = 50; // unidades por fila en la línea
+
+    private final float spacing;
+
+    // Huecos en coordenadas de la formación: u = lateral (izq → der), v = profundidad
+    private float[] slotU = new float[0], slotV = new float[0];
+    private int[] rankStart = new int[1];
+    private int ranks;
+
+    // Resultado por índice del grupo
+    private float[] outX = new float[0], outY = new float[0];
+
+    // Claves de ordenación (valor float ordenable << 32 | índice) e índices ordenados
+    private long[] keys = new long[0];
+    private int[] order = new int[0];
+
+    public FormationPlanner(float spacing) {
+        this.spacing = spacing;
+    }
+
+    /** Calcula el hueco de cada unidad del grupo; se leen con {@link #getSlotX}/{@link #getSlotY}. */
+    public void plan(UnitStore store, Array<Unit> group, float destX, float destY, Shape shape) {
+        int n = group.size;
+        if (n == 0) return;
+        ensureCapacity(n);
+
+        // Centro del grupo y dirección de marcha (adelante = f, derecha = r)
+        float cx = 0f, cy = 0f;
+        for (int i = 0; i < n; i++) {
+            int id = group.get(i).getId();
+            cx += store.x[id];
+            cy += store.y[id];
+        }
+        cx /= n;
+        cy /= n;
+        float fx = destX - cx, fy = destY - cy;
+        float len = (float) Math.sqrt(fx * fx + fy * fy);
+        if (len < 1e-3f) {
+            fx = 0f;
+            fy = 1f;
+        } else {
+            fx /= len;
+            fy /= len;
+        }
+        float rx = fy, ry = -fx;
+
+        layout(shape, n);
+
+        // 1) Por profundidad: las unidades más adelantadas van a las primeras filas
+        for (int i = 0; i < n; i++) {
+            int id = group.get(i).getId();
+            float depth = (store.x[id] - cx) * fx + (store.y[id] - cy) * fy;
+            keys[i] = key(-depth, i);
+        }
+        Arrays.sort(keys, 0, n);
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+
+        // 2) Dentro de cada fila, de izquierda a derecha contra los huecos (ya generados en ese orden)
+        for (int r = 0; r < ranks; r++) {
+            int from = rankStart[r], to = rankStart[r + 1];
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                int id = group.get(i).getId();
+                float lateral = (store.x[id] - cx) * rx + (store.y[id] - cy) * ry;
+                keys[k] = key(lateral, i);
+            }
+            Arrays.sort(keys, from, to);
+            for (int k = from; k < to; k++) {
+                int i = (int) keys[k];
+                outX[i] = destX + rx * slotU[k] + fx * slotV[k];
+                outY[i] = destY + ry * slotU[k] + fy * slotV[k];
+            }
+        }
+    }
+
+    public float getSlotX(int groupIndex) { return outX[groupIndex]; }
+    public float getSlotY(int groupIndex) { return outY[groupIndex]; }
+    public float getSpacing() { return spacing; }
+
+    // Genera n huecos fila a fila (de delante hacia atrás), centrados en el destino
+    private void layout(Shape shape, int n) {
+        ranks = 0;
+        int placed = 0;
+        switch (shape) {
+            case LINE: {
+                int rows = (n + LINE_MAX_WIDTH - 1) / LINE_MAX_WIDTH;
+                int cols = (n + rows - 1) / rows;
+                while (placed < n) placed = addRank(placed, Math.min(cols, n - placed));
+                break;
+            }
+            case WEDGE: {
+                for (int width = 1; placed < n; width += 2) placed = addRank(placed, Math.min(width, n - placed));
+                break;
+            }
+            case BOX:
+            default: {
+                int cols = Math.max(1, (int) Math.ceil(Math.sqrt(n * BOX_ASPECT)));
+                while (placed < n) placed = addRank(placed, Math.min(cols, n - placed));
+                break;
+            }
+        }
+        // La fila del medio queda sobre el destino
+        float offset = (ranks - 1) * spacing * 0.5f;
+        for (int k = 0; k < n; k++) slotV[k] += offset;
+    }
+
+    private int addRank(int first, int count) {
+        float v = -ranks * spacing;
+        for (int j = 0; j < count; j++) {
+            slotU[first + j] = (j - (count - 1) * 0.5f) * spacing;
+            slotV[first + j] = v;
+        }
+        rankStart[ranks] = first;
+        rankStart[++ranks] = first + count;
+        return first + count;
+    }
+
+    private void ensureCapacity(int n) {
+        if (slotU.length >= n) return;
+        int cap = Math.max(n, slotU.length * 2);
+        slotU = new float[cap];
+        slotV = new float[cap];
+        rankStart = new int[cap + 1];
+        outX = new float[cap];
+        outY = new float[cap];
+        keys = new long[cap];
+        order = new int[cap];
+    }
+
+    // Clave ordenable sin objetos: el float se convierte en un int que ordena igual
+    private static long key(float value, int index) {
+        int bits = Float.floatToIntBits(value);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (index & 0xffffffffL);
+    }
+}
@@ -0,0 +1,118 @@
+package com.armymen.systems;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Tiempos por sistema de cada frame con ámbitos begin/end sobre System.nanoTime().
+ * Desactivado no mide nada (una comparación por ámbito). Guarda además un historial
+ * de duraciones de frame para percentiles y los bytes reservados por el hilo principal.
+ * Las secciones pueden ir anidadas (UNITS, COLLISIONS y FOG están dentro de SIMULATION).
+ */
+public class FrameProfiler {
+
+    public static final int CAMERA = 0, INPUT = 1, SIMULATION = 2, UNITS = 3, COLLISIONS = 4,
+        CULLING = 5, WORLD_DRAW = 6, SHAPES = 7, UI = 8, TERRAIN = 9, FOG = 10;
+    public static final int SECTIONS = 11;
+
+    private static final String[] NAMES = {
+        "camera", "input", "simulation", "units", "collisions", "culling", "world_draw", "shapes", "ui", "terrain", "fog"
+    };
+    private static final int HISTORY = 600;   // ~10 s a 60 FPS
+
+    private boolean enabled;
+    private final long[] started = new long[SECTIONS];
+    private final long[] current = new long[SECTIONS];
+    private final long[] last = new long[SECTIONS];
+
+    private long frameStart, lastFrameStart;
+    private long lastFrameNanos, lastCpuNanos;
+    private long frames;
+
+    // Duraciones de frame (ms) en anillo, y copia para ordenar al pedir percentiles
+    private final float[] history = new float[HISTORY];
+    private final float[] sorted = new float[HISTORY];
+    private int historyCount, historyHead;
+    private boolean sortedValid;
+
+    // Memoria reservada por el hilo principal (si la JVM lo permite)
+    private final com.sun.management.ThreadMXBean allocBean;
+    private final long threadId = Thread.currentThread().getId();
+    private long allocAtFrameStart = -1, lastAllocBytes;
+
+    public FrameProfiler() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        allocBean = bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            historyCount = historyHead = 0;
+            lastFrameStart = 0L;
+            allocAtFrameStart = -1;
+        }
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    public void beginFrame() {
+        if (!enabled) return;
+        frameStart = System.nanoTime();
+        if (lastFrameStart != 0L) {
+            lastFrameNanos = frameStart - lastFrameStart;
+            history[historyHead] = lastFrameNanos / 1e6f;
+            historyHead = (historyHead + 1) % HISTORY;
+            if (historyCount < HISTORY) historyCount++;
+            sortedValid = false;
+        }
+        lastFrameStart = frameStart;
+        Arrays.fill(current, 0L);
+        if (allocBean != null) allocAtFrameStart = allocBean.getThreadAllocatedBytes(threadId);
+    }
+
+    public void begin(int section) {
+        if (enabled) started[section] = System.nanoTime();
+    }
+
+    public void end(int section) {
+        if (enabled) current[section] += System.nanoTime() - started[section];
+    }
+
+    public void endFrame() {
+        if (!enabled) return;
+        lastCpuNanos = System.nanoTime() - frameStart;
+        System.arraycopy(current, 0, last, 0, SECTIONS);
+        if (allocAtFrameStart >= 0) lastAllocBytes = allocBean.getThreadAllocatedBytes(threadId) - allocAtFrameStart;
+        frames++;
+    }
+
+    /** Percentil (0..1) de la duración de frame en ms sobre el historial reciente. */
+    public float percentile(float p) {
+        if (historyCount == 0) return 0f;
+        if (!sortedValid) {
+            System.arraycopy(history, 0, sorted, 0, historyCount);
+            Arrays.sort(sorted, 0, historyCount);
+            sortedValid = true;
+        }
+        int i = Math.min(historyCount - 1, (int) (p * historyCount));
+        return sorted[i];
+    }
+
+    public static String getName(int section) { return NAMES[section]; }
+
+    /** Tiempo de la sección en el último frame, en nanosegundos. */
+    public long getSectionNanos(int section) { return last[section]; }
+
+    /** Tiempo entre el inicio del frame anterior y el del último (incluye vsync y swap). */
+    public long getFrameNanos() { return lastFrameNanos; }
+
+    /** Tiempo de trabajo del último frame en render(), sin esperas fuera de él. */
+    public long getCpuNanos() { return lastCpuNanos; }
+
+    /** Bytes reservados por el hilo principal en el último frame (-1 si no se puede medir). */
+    public long getAllocatedBytes() { return allocBean == null ? -1 : lastAllocBytes; }
+
+    public long getFrameCount() { return frames; }
+}
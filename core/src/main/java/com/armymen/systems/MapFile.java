@@ -0,0 +1,195 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Mapa en disco por trozos, para que el terreno de mapas grandes no tenga que estar en el heap.
+ *
+ * Cabecera de {@value #HEADER_BYTES} bytes (MAGIC, VERSION, ancho, alto, tamaño de casilla,
+ * casillas por trozo, trozos en x e y) y después los trozos fila a fila, cada uno de
+ * {@link TerrainMap#CHUNK_BYTES} bytes fijos (tipos de suelo y elementos): la posición de
+ * un trozo se calcula, no hace falta índice.
+ *
+ * Se lee por regiones de hasta {@value #REGION_BYTES} bytes mapeadas en memoria al primer
+ * uso: los datos quedan en la caché de páginas del sistema, fuera del heap, y leer un
+ * trozo es copiar sus bytes a un array. Se puede leer desde varios hilos a la vez.
+ */
+public final class MapFile implements Closeable {
+
+    public static final int MAGIC = 0x414D4D50;   // "AMMP"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".amap";
+
+    private static final int HEADER_BYTES = 8 * 4;
+    private static final int REGION_BYTES = 64 << 20;   // múltiplo del tamaño de trozo
+
+    private final Path path;
+    private final FileChannel channel;
+    private final float width, height, tileSize;
+    private final int chunksX, chunksY;
+    private final MappedByteBuffer[] regions;
+
+    private MapFile(Path path, FileChannel channel, ByteBuffer header) {
+        this.path = path;
+        this.channel = channel;
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt() != MAGIC) throw corrupt("no es un mapa");
+        int version = header.getInt();
+        if (version != VERSION) throw corrupt("versión " + version + " no soportada");
+        width = header.getFloat();
+        height = header.getFloat();
+        tileSize = header.getFloat();
+        if (header.getInt() != TerrainMap.CHUNK_TILES) throw corrupt("tamaño de trozo distinto");
+        chunksX = header.getInt();
+        chunksY = header.getInt();
+        int tilesX = (int) Math.ceil(width / tileSize), tilesY = (int) Math.ceil(height / tileSize);
+        if (!(tileSize > 0f) || chunksX != (tilesX + TerrainMap.CHUNK_TILES - 1) / TerrainMap.CHUNK_TILES
+            || chunksY != (tilesY + TerrainMap.CHUNK_TILES - 1) / TerrainMap.CHUNK_TILES) {
+            throw corrupt("cabecera incoherente");
+        }
+        long bytes = (long) chunksX * chunksY * TerrainMap.CHUNK_BYTES;
+        try {
+            if (channel.size() != HEADER_BYTES + bytes) throw corrupt("tamaño no coincide con la cabecera");
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo leer el mapa " + path, e);
+        }
+        regions = new MappedByteBuffer[(int) ((bytes + REGION_BYTES - 1) / REGION_BYTES)];
+    }
+
+    /** Abre el fichero y lee la cabecera; los trozos no se leen hasta que se piden. */
+    public static MapFile open(Path file) {
+        FileChannel ch = null;
+        try {
+            ch = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && ch.read(header) >= 0) { }
+            if (header.hasRemaining()) throw new GdxRuntimeException("Mapa no válido " + file + ": demasiado corto");
+            header.flip();
+            return new MapFile(file, ch, header);
+        } catch (IOException e) {
+            close(ch);
+            throw new GdxRuntimeException("No se pudo abrir el mapa " + file, e);
+        } catch (RuntimeException e) {
+            close(ch);
+            throw e;
+        }
+    }
+
+    /** Copia el trozo {@code chunk} (cy * chunksX + cx) en {@code out}. */
+    public void readChunk(int chunk, byte[] out) {
+        long offset = (long) chunk * TerrainMap.CHUNK_BYTES;
+        region((int) (offset / REGION_BYTES)).get((int) (offset % REGION_BYTES), out, 0, TerrainMap.CHUNK_BYTES);
+    }
+
+    // La región se mapea la primera vez que se pide (mapear no lee nada del disco)
+    private synchronized MappedByteBuffer region(int r) {
+        MappedByteBuffer region = regions[r];
+        if (region == null) {
+            long start = (long) r * REGION_BYTES;
+            long size = Math.min(REGION_BYTES, (long) chunksX * chunksY * TerrainMap.CHUNK_BYTES - start);
+            try {
+                region = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start, size);
+            } catch (IOException e) {
+                throw new GdxRuntimeException("No se pudo leer el mapa " + path, e);
+            }
+            regions[r] = region;
+        }
+        return region;
+    }
+
+    /**
+     * Escribe un mapa generado de {@code size}x{@code size}: el suelo de
+     * {@link TerrainMap#generate} más rocas y yacimientos de plástico. Trozo a trozo, sin
+     * tener el mapa entero en memoria, así se pueden crear mapas de cualquier tamaño.
+     */
+    public static void generate(Path file, float size, float tileSize, long seed) {
+        int tilesX = (int) Math.ceil(size / tileSize);
+        int chunksX = (tilesX + TerrainMap.CHUNK_TILES - 1) / TerrainMap.CHUNK_TILES;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putFloat(size).putFloat(size).putFloat(tileSize)
+                    .putInt(TerrainMap.CHUNK_TILES).putInt(chunksX).putInt(chunksX).flip();
+                writeFully(ch, header);
+
+                // Una fila de trozos por escritura
+                ByteBuffer row = ByteBuffer.allocate(chunksX * TerrainMap.CHUNK_BYTES);
+                for (int cy = 0; cy < chunksX; cy++) {
+                    row.clear();
+                    for (int cx = 0; cx < chunksX; cx++) generateChunk(row, cx, cy, tilesX, seed);
+                    row.flip();
+                    writeFully(ch, row);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo escribir el mapa " + file, e);
+        }
+    }
+
+    private static void generateChunk(ByteBuffer out, int cx, int cy, int tiles, long seed) {
+        int start = out.position();
+        for (int ly = 0; ly < TerrainMap.CHUNK_TILES; ly++) {
+            for (int lx = 0; lx < TerrainMap.CHUNK_TILES; lx++) {
+                int tx = cx * TerrainMap.CHUNK_TILES + lx, ty = cy * TerrainMap.CHUNK_TILES + ly;
+                int i = ly * TerrainMap.CHUNK_TILES + lx;
+                if (tx >= tiles || ty >= tiles) {
+                    // Fuera del mapa (último trozo de cada fila): a cero, el buffer se reutiliza
+                    out.put(start + i, TerrainMap.GRASS).put(start + TerrainMap.CHUNK_AREA + i, TerrainMap.NONE);
+                    continue;
+                }
+                out.put(start + i, TerrainMap.generatedType(tx, ty, seed));
+
+                // Rocas en grupos (ruido alto) y yacimientos sueltos sobre tierra
+                byte feature = TerrainMap.NONE;
+                if (TerrainMap.noise(tx / 6f, ty / 6f, seed + 2) > 0.86f) feature = TerrainMap.ROCK;
+                else if (TerrainMap.lattice(tx, ty, seed + 3) > 0.997f) feature = TerrainMap.DEPOSIT;
+                out.put(start + TerrainMap.CHUNK_AREA + i, feature);
+            }
+        }
+        out.position(start + TerrainMap.CHUNK_BYTES);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    public Path getPath() { return path; }
+    public float getWidth() { return width; }
+    public float getHeight() { return height; }
+    public float getTileSize() { return tileSize; }
+    public int getChunksX() { return chunksX; }
+    public int getChunksY() { return chunksY; }
+
+    @Override
+    public void close() {
+        close(channel);
+    }
+
+    private static void close(FileChannel ch) {
+        if (ch == null) return;
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+            // sólo lectura: nada que perder
+        }
+    }
+
+    private GdxRuntimeException corrupt(String reason) {
+        return new GdxRuntimeException("Mapa no válido " + path + ": " + reason);
+    }
+}
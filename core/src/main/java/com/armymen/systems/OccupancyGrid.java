@@ -0,0 +1,135 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * Rejilla de ocupación del mapa guardada como bitset (1 bit por celda).
+ * Los edificios marcan aquí las celdas que tapan; la navegación las trata como obstáculos.
+ * Un segundo bitset guarda las reservas de obras en camino: no bloquean el paso,
+ * pero sí impiden colocar otro edificio encima.
+ */
+public class OccupancyGrid {
+
+    private static final float EDGE = 0.01f;
+
+    private final float cellSize;
+    private final int cols, rows;
+    private final long[] blocked;
+    private final long[] reserved;
+
+    public OccupancyGrid(float width, float height, float cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.blocked = new long[(cols * rows + 63) >>> 6];
+        this.reserved = new long[blocked.length];
+    }
+
+    /** Marca como bloqueadas todas las celdas que toca el rectángulo. */
+    public void block(Rectangle bounds) {
+        set(blocked, bounds, true);
+    }
+
+    /** Reserva el hueco de una obra que aún no existe. */
+    public void reserve(Rectangle bounds) {
+        set(reserved, bounds, true);
+    }
+
+    /** Libera una reserva (al terminar o cancelar la obra). */
+    public void release(Rectangle bounds) {
+        set(reserved, bounds, false);
+    }
+
+    /**
+     * ¿Cabe aquí un edificio? El rectángulo debe estar dentro del mapa y ninguna
+     * de sus celdas puede estar bloqueada ni reservada. Coste: una prueba de bit por celda.
+     */
+    public boolean isAreaFree(Rectangle bounds) {
+        if (bounds.x < 0 || bounds.y < 0
+            || bounds.x + bounds.width > cols * cellSize || bounds.y + bounds.height > rows * cellSize) return false;
+        int x0 = col(bounds.x), x1 = lastCol(bounds);
+        int y0 = row(bounds.y), y1 = lastRow(bounds);
+        for (int cy = y0; cy <= y1; cy++)
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * cols + cx;
+                long bit = 1L << cell;
+                if (((blocked[cell >>> 6] | reserved[cell >>> 6]) & bit) != 0) return false;
+            }
+        return true;
+    }
+
+    public boolean isReserved(int cell) {
+        return (reserved[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /** Redondea una coordenada al borde de celda más cercano (para alinear edificios). */
+    public float snap(float v) {
+        return Math.round(v / cellSize) * cellSize;
+    }
+
+    // El borde derecho/superior es exclusivo: un rectángulo alineado no toca la celda siguiente
+    private int lastCol(Rectangle bounds) {
+        return Math.max(col(bounds.x), col(bounds.x + bounds.width - EDGE));
+    }
+
+    private int lastRow(Rectangle bounds) {
+        return Math.max(row(bounds.y), row(bounds.y + bounds.height - EDGE));
+    }
+
+    private void set(long[] bits, Rectangle bounds, boolean value) {
+        int x0 = col(bounds.x), x1 = lastCol(bounds);
+        int y0 = row(bounds.y), y1 = lastRow(bounds);
+        for (int cy = y0; cy <= y1; cy++)
+            for (int cx = x0; cx <= x1; cx++) {
+                int cell = cy * cols + cx;
+                if (value) bits[cell >>> 6] |= 1L << cell;
+                else bits[cell >>> 6] &= ~(1L << cell);
+            }
+    }
+
+    public boolean isBlocked(int cell) {
+        return (blocked[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public boolean isBlocked(int cx, int cy) {
+        return isBlocked(cy * cols + cx);
+    }
+
+    /** ¿El segmento no toca celdas bloqueadas? Muestrea cada media celda. */
+    public boolean isSegmentFree(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0, dy = y1 - y0;
+        int steps = (int) (Math.sqrt(dx * dx + dy * dy) / (cellSize * 0.5f)) + 1;
+        for (int s = 1; s <= steps; s++) {
+            float t = (float) s / steps;
+            if (isBlocked(cellIndex(x0 + dx * t, y0 + dy * t))) return false;
+        }
+        return true;
+    }
+
+    public int col(float x) {
+        int c = (int) (x / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    public int row(float y) {
+        int r = (int) (y / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    public int cellIndex(float x, float y) {
+        return row(y) * cols + col(x);
+    }
+
+    public float centerX(int cell) {
+        return (cell % cols + 0.5f) * cellSize;
+    }
+
+    public float centerY(int cell) {
+        return (cell / cols + 0.5f) * cellSize;
+    }
+
+    public float getCellSize() { return cellSize; }
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+    public int getCellCount() { return cols * rows; }
+}
@@ -0,0 +1,71 @@
+package com.armymen.systems;
+
+import com.armymen.entities.Unit;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reparte el movimiento y la lógica por unidad entre los núcleos con fork/join.
+ * Cada trozo es un rango contiguo de ids (bueno para la caché) y cada unidad sólo
+ * escribe su propia fila, así que el resultado es idéntico al recorrido en serie.
+ * Los efectos sobre el mundo (p. ej. edificios terminados) no se aplican aquí:
+ * las unidades los guardan y el mundo los aplica después, en el hilo principal.
+ */
+public class ParallelUnitUpdater {
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelUnitUpdater(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Requiere que units.get(i).getId() == i (el mundo añade ambos a la vez).
+     * Con steering != null (ya reconstruido) las unidades se mueven con él; si no, en línea recta.
+     */
+    public void update(UnitStore store, SteeringSystem steering, Array<Unit> units, float delta) {
+        pool.invoke(new Chunk(store, steering, units, delta, 0, units.size, chunkSize));
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        private final UnitStore store;
+        private final SteeringSystem steering;
+        private final Array<Unit> units;
+        private final float delta;
+        private final int from, to, chunkSize;
+
+        Chunk(UnitStore store, SteeringSystem steering, Array<Unit> units, float delta,
+              int from, int to, int chunkSize) {
+            this.store = store;
+            this.steering = steering;
+            this.units = units;
+            this.delta = delta;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                store.followFlow(from, to);
+                store.followPath(from, to);
+                if (steering != null) steering.steer(store, from, to, delta);
+                else store.integrate(from, to, delta);
+                for (int i = from; i < to; i++) units.get(i).update(delta);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(store, steering, units, delta, from, mid, chunkSize),
+                new Chunk(store, steering, units, delta, mid, to, chunkSize));
+        }
+    }
+}
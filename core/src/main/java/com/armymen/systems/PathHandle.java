@@ -0,0 +1,32 @@
+package com.armymen.systems;
+
+/**
+ * Resultado de una petición a {@link PathService}. Empieza en PENDING y el servicio
+ * lo completa en algún tick posterior; quien lo pidió sólo consulta el estado.
+ */
+public class PathHandle {
+
+    public enum Status { PENDING, READY, FAILED }
+
+    Status status = Status.PENDING;
+    float[] waypoints;              // pares x, y; el último es el destino exacto
+    final float startX, startY, goalX, goalY;
+
+    PathHandle(float startX, float startY, float goalX, float goalY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.goalX = goalX;
+        this.goalY = goalY;
+    }
+
+    public Status getStatus() { return status; }
+    public boolean isReady() { return status == Status.READY; }
+
+    /** Número de puntos de paso (0 mientras está pendiente). */
+    public int size() { return waypoints == null ? 0 : waypoints.length / 2; }
+    public float getX(int i) { return waypoints[2 * i]; }
+    public float getY(int i) { return waypoints[2 * i + 1]; }
+
+    public float getGoalX() { return goalX; }
+    public float getGoalY() { return goalY; }
+}
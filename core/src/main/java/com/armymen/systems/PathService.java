@@ -0,0 +1,301 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Servicio de caminos A* repartido en el tiempo.
+ * Las peticiones se encolan y devuelven un {@link PathHandle}; cada tick
+ * {@link #update()} avanza la búsqueda en curso hasta agotar el presupuesto
+ * (nodos expandidos y, si se configura, microsegundos), así muchas órdenes a la
+ * vez no provocan un pico en un frame.
+ * Los caminos se memorizan por (sector de salida, celda de destino) junto con el
+ * punto del que salieron, y se descartan cuando un edificio nuevo tapa alguno de sus
+ * tramos (también el primero, desde ese punto). Otra unidad del mismo sector sólo
+ * reutiliza el camino si ve en línea recta su primer punto de paso.
+ */
+public class PathService {
+
+    private static final int STRAIGHT = 10, DIAGONAL = 14;
+    private static final int[] DX = { 1, -1, 0, 0, 1, 1, -1, -1 };
+    private static final int[] DY = { 0, 0, 1, -1, 1, -1, 1, -1 };
+    private static final int MEMO_CAPACITY = 256;
+
+    private final OccupancyGrid grid;
+    private final int sectorCells;          // lado del sector en celdas
+    private final int sectorCols;
+
+    // Presupuesto por tick: nodos (determinista) y tiempo opcional (0 = sin límite de tiempo)
+    private int nodeBudget = 4096;
+    private long budgetNanos = 0L;
+
+    private final ArrayDeque<PathHandle> queue = new ArrayDeque<>();
+    // Valor: origen (x, y) seguido de los puntos de paso
+    private final Map<Long, float[]> memo = new LinkedHashMap<Long, float[]>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+            return size() > MEMO_CAPACITY;
+        }
+    };
+
+    // Estado de la búsqueda en curso (arrays reutilizados; 'stamp' evita limpiarlos)
+    private PathHandle current;
+    private int startCell, goalCell;
+    private final int[] g, parent, stamp;
+    private int searchId;
+    private long[] open;
+    private int openSize;
+
+    private final IntArray cellPath = new IntArray();
+    private final FloatArray points = new FloatArray();
+
+    // Estadísticas
+    private int expandedLastTick;
+    private int memoHits, searches;
+
+    public PathService(OccupancyGrid grid, int sectorCells) {
+        this.grid = grid;
+        this.sectorCells = sectorCells;
+        this.sectorCols = (grid.getCols() + sectorCells - 1) / sectorCells;
+        int n = grid.getCellCount();
+        this.g = new int[n];
+        this.parent = new int[n];
+        this.stamp = new int[n];
+        this.open = new long[256];
+    }
+
+    /** Pide un camino; el resultado llega en un tick posterior (o ya, si estaba memorizado). */
+    public PathHandle request(float sx, float sy, float gx, float gy) {
+        PathHandle handle = new PathHandle(sx, sy, gx, gy);
+        if (!completeFromMemo(handle)) queue.addLast(handle);
+        return handle;
+    }
+
+    /** Avanza las búsquedas pendientes dentro del presupuesto del tick. */
+    public void update() {
+        int expanded = 0;
+        long deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : 0L;
+        while (expanded < nodeBudget) {
+            if (current == null) {
+                if (queue.isEmpty()) break;
+                PathHandle next = queue.pollFirst();
+                if (completeFromMemo(next)) continue;
+                begin(next);
+            }
+            int budget = nodeBudget - expanded;
+            if (deadline != 0L) budget = Math.min(budget, 64); // revisamos el reloj cada 64 nodos
+            expanded += expand(budget);
+            if (deadline != 0L && System.nanoTime() >= deadline) break;
+        }
+        expandedLastTick = expanded;
+    }
+
+    /** Un edificio nuevo: olvida los caminos memorizados que lo atraviesan (desde su origen). */
+    public void onObstacleAdded(Rectangle bounds) {
+        float pad = grid.getCellSize();
+        Iterator<float[]> it = memo.values().iterator();
+        while (it.hasNext()) {
+            float[] w = it.next();
+            if (crosses(w, bounds.x - pad, bounds.y - pad, bounds.x + bounds.width + pad, bounds.y + bounds.height + pad))
+                it.remove();
+        }
+    }
+
+    public void setNodeBudget(int nodes) { this.nodeBudget = nodes; }
+    /** Límite de tiempo por tick en microsegundos (0 = sólo el presupuesto de nodos, determinista). */
+    public void setBudgetMicros(int micros) { this.budgetNanos = micros * 1000L; }
+
+    public int getPendingCount() { return queue.size() + (current != null ? 1 : 0); }
+    public int getExpandedLastTick() { return expandedLastTick; }
+    public int getMemoHits() { return memoHits; }
+    public int getSearchCount() { return searches; }
+
+    // -------------------------------------------------------------------------------------
+    // A*
+    // -------------------------------------------------------------------------------------
+
+    private void begin(PathHandle handle) {
+        current = handle;
+        searches++;
+        startCell = grid.cellIndex(handle.startX, handle.startY);
+        goalCell = grid.cellIndex(handle.goalX, handle.goalY);
+        if (++searchId == 0) {
+            Arrays.fill(stamp, 0);
+            searchId = 1;
+        }
+        openSize = 0;
+        visit(startCell, 0, -1);
+        push(heuristic(startCell), startCell);
+    }
+
+    /** Expande como mucho 'max' nodos; devuelve cuántos expandió. */
+    private int expand(int max) {
+        final int cols = grid.getCols(), rows = grid.getRows();
+        int n = 0;
+        while (n < max) {
+            if (openSize == 0) {
+                finish(false);
+                return n;
+            }
+            long top = pop();
+            int c = (int) top;
+            int f = (int) (top >>> 32);
+            if (f - heuristic(c) > g[c]) continue; // entrada vieja
+            n++;
+            if (c == goalCell) {
+                finish(true);
+                return n;
+            }
+            int cx = c % cols, cy = c / cols;
+            for (int k = 0; k < 8; k++) {
+                int nx = cx + DX[k], ny = cy + DY[k];
+                if (nx < 0 || ny < 0 || nx >= cols || ny >= rows) continue;
+                int nc = ny * cols + nx;
+                if (nc != goalCell && grid.isBlocked(nc)) continue;
+                if (k >= 4 && (grid.isBlocked(cx + DX[k], cy) || grid.isBlocked(cx, cy + DY[k]))) continue;
+                int ng = g[c] + (k < 4 ? STRAIGHT : DIAGONAL);
+                if (stamp[nc] != searchId || ng < g[nc]) {
+                    visit(nc, ng, c);
+                    push(ng + heuristic(nc), nc);
+                }
+            }
+        }
+        return n;
+    }
+
+    private void finish(boolean found) {
+        PathHandle handle = current;
+        current = null;
+        if (!found) {
+            handle.status = PathHandle.Status.FAILED;
+            return;
+        }
+
+        cellPath.clear();
+        for (int c = goalCell; c != -1; c = parent[c]) cellPath.add(c);
+        cellPath.reverse();
+
+        // Suavizado: desde cada punto, saltar al más lejano que se vea en línea recta
+        points.clear();
+        points.add(handle.startX);
+        points.add(handle.startY);
+        float ax = handle.startX, ay = handle.startY;
+        int i = 1;
+        while (i < cellPath.size - 1) {
+            int j = i;
+            while (j + 1 < cellPath.size - 1
+                && lineOfSight(ax, ay, grid.centerX(cellPath.get(j + 1)), grid.centerY(cellPath.get(j + 1)), goalCell)) j++;
+            if (lineOfSight(ax, ay, handle.goalX, handle.goalY, goalCell)) break;
+            ax = grid.centerX(cellPath.get(j));
+            ay = grid.centerY(cellPath.get(j));
+            points.add(ax);
+            points.add(ay);
+            i = j + 1;
+        }
+        points.add(handle.goalX);
+        points.add(handle.goalY);
+
+        float[] entry = Arrays.copyOf(points.items, points.size);
+        memo.put(memoKey(handle.startX, handle.startY, handle.goalX, handle.goalY), entry);
+        complete(handle, entry);
+    }
+
+    // Camino memorizado, si el primer tramo sirve desde la salida real de esta petición
+    private boolean completeFromMemo(PathHandle handle) {
+        float[] entry = memo.get(memoKey(handle.startX, handle.startY, handle.goalX, handle.goalY));
+        if (entry == null) return false;
+        if ((entry[0] != handle.startX || entry[1] != handle.startY)
+            && !lineOfSight(handle.startX, handle.startY, entry[2], entry[3], grid.cellIndex(handle.goalX, handle.goalY)))
+            return false;
+        memoHits++;
+        complete(handle, entry);
+        return true;
+    }
+
+    private void complete(PathHandle handle, float[] entry) {
+        // Sin el origen; el último punto es siempre el destino exacto de esta petición
+        float[] own = Arrays.copyOfRange(entry, 2, entry.length);
+        own[own.length - 2] = handle.goalX;
+        own[own.length - 1] = handle.goalY;
+        handle.waypoints = own;
+        handle.status = PathHandle.Status.READY;
+    }
+
+    // La celda 'goal' cuenta como libre aunque esté bloqueada (se puede pedir ir a un edificio)
+    private boolean lineOfSight(float x0, float y0, float x1, float y1, int goal) {
+        float dx = x1 - x0, dy = y1 - y0;
+        float len = (float) Math.sqrt(dx * dx + dy * dy);
+        int steps = (int) (len / (grid.getCellSize() * 0.5f)) + 1;
+        for (int s = 1; s <= steps; s++) {
+            float t = (float) s / steps;
+            int cell = grid.cellIndex(x0 + dx * t, y0 + dy * t);
+            if (cell != goal && grid.isBlocked(cell)) return false;
+        }
+        return true;
+    }
+
+    // Todos los tramos, empezando por origen -> primer punto
+    private static boolean crosses(float[] w, float minX, float minY, float maxX, float maxY) {
+        for (int i = 0; i + 3 < w.length; i += 2) {
+            float x0 = w[i], y0 = w[i + 1], x1 = w[i + 2], y1 = w[i + 3];
+            if (Math.max(x0, x1) < minX || Math.min(x0, x1) > maxX) continue;
+            if (Math.max(y0, y1) < minY || Math.min(y0, y1) > maxY) continue;
+            return true; // las cajas se tocan: descartamos por si acaso
+        }
+        return false;
+    }
+
+    private int heuristic(int cell) {
+        final int cols = grid.getCols();
+        int dx = Math.abs(cell % cols - goalCell % cols);
+        int dy = Math.abs(cell / cols - goalCell / cols);
+        return STRAIGHT * Math.max(dx, dy) + (DIAGONAL - STRAIGHT) * Math.min(dx, dy);
+    }
+
+    private void visit(int cell, int cost, int from) {
+        stamp[cell] = searchId;
+        g[cell] = cost;
+        parent[cell] = from;
+    }
+
+    private long memoKey(float sx, float sy, float gx, float gy) {
+        int sector = (grid.row(sy) / sectorCells) * sectorCols + grid.col(sx) / sectorCells;
+        return (long) sector * grid.getCellCount() + grid.cellIndex(gx, gy);
+    }
+
+    private void push(int f, int cell) {
+        if (openSize == open.length) open = Arrays.copyOf(open, open.length * 2);
+        long v = ((long) f << 32) | cell;
+        int i = openSize++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (open[p] <= v) break;
+            open[i] = open[p];
+            i = p;
+        }
+        open[i] = v;
+    }
+
+    private long pop() {
+        long top = open[0];
+        long last = open[--openSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= openSize) break;
+            if (child + 1 < openSize && open[child + 1] < open[child]) child++;
+            if (open[child] >= last) break;
+            open[i] = open[child];
+            i = child;
+        }
+        open[i] = last;
+        return top;
+    }
+}
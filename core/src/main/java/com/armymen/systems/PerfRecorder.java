@@ -0,0 +1,75 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Graba una fila CSV por frame con los datos de {@link FrameProfiler} y los contadores
+ * de dibujo, para comparar versiones fuera del juego. Los tiempos van en microsegundos
+ * enteros (sin formatear decimales) y la línea se compone en un StringBuilder reutilizado.
+ */
+public class PerfRecorder {
+
+    private Writer out;
+    private FileHandle file;
+    private final StringBuilder line = new StringBuilder(256);
+    private int rows;
+
+    public void start(FileHandle target) {
+        stop();
+        file = target;
+        out = new BufferedWriter(target.writer(false, "UTF-8"), 64 * 1024);
+        rows = 0;
+        line.setLength(0);
+        line.append("frame,frame_us,cpu_us");
+        for (int s = 0; s < FrameProfiler.SECTIONS; s++) line.append(',').append(FrameProfiler.getName(s)).append("_us");
+        line.append(",draw_calls,texture_binds,units,visible_units,buildings,alloc_bytes\n");
+        write();
+    }
+
+    public void record(FrameProfiler profiler, int drawCalls, int textureBinds,
+                       int units, int visibleUnits, int buildings) {
+        if (out == null) return;
+        line.setLength(0);
+        line.append(profiler.getFrameCount())
+            .append(',').append(profiler.getFrameNanos() / 1000L)
+            .append(',').append(profiler.getCpuNanos() / 1000L);
+        for (int s = 0; s < FrameProfiler.SECTIONS; s++) line.append(',').append(profiler.getSectionNanos(s) / 1000L);
+        line.append(',').append(drawCalls)
+            .append(',').append(textureBinds)
+            .append(',').append(units)
+            .append(',').append(visibleUnits)
+            .append(',').append(buildings)
+            .append(',').append(profiler.getAllocatedBytes())
+            .append('\n');
+        write();
+        rows++;
+    }
+
+    /** Cierra el fichero. Devuelve el fichero grabado (o null si no se estaba grabando). */
+    public FileHandle stop() {
+        if (out == null) return null;
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo cerrar " + file.path(), e);
+        }
+        out = null;
+        return file;
+    }
+
+    public boolean isRecording() { return out != null; }
+    public int getRows() { return rows; }
+
+    private void write() {
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("No se pudo escribir " + file.path(), e);
+        }
+    }
+}
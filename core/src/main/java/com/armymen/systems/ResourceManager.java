@@ -1,8 +1,18 @@
 package com.armymen.systems;
 
+import com.armymen.jfr.GameEvents;
+import com.badlogic.gdx.utils.Array;
+
 public class ResourceManager {
     private int plastic;
 
+    // Avisos de cambio (el HUD se actualiza sólo cuando cambia algo)
+    private final Array<Listener> listeners = new Array<>(false, 4);
+
+    public interface Listener {
+        void onPlasticChanged(int plastic);
+    }
+
     public ResourceManager(int initialPlastic) {
         this.plastic = initialPlastic;
     }
@@ -10,16 +20,38 @@ public class ResourceManager {
     public boolean spend(int amount) {
         if (plastic >= amount) {
             plastic -= amount;
+            if (amount != 0) notifyChanged();
             return true;
         }
+        if (GameEvents.enabled) {
+            GameEvents.SpendFailed event = new GameEvents.SpendFailed();
+            event.requested = amount;
+            event.available = plastic;
+            event.commit();
+        }
         return false;
     }
 
     public void add(int amount) {
         plastic += amount;
+        if (amount != 0) notifyChanged();
     }
 
     public int getPlastic() {
         return plastic;
     }
+
+    /** Registra un oyente y le avisa ya con el valor actual. Llamar desde el hilo principal. */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        listener.onPlasticChanged(plastic);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeValue(listener, true);
+    }
+
+    private void notifyChanged() {
+        for (int i = 0; i < listeners.size; i++) listeners.get(i).onPlasticChanged(plastic);
+    }
 }
@@ -0,0 +1,157 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Rejilla uniforme para consultas espaciales sobre el mapa.
+ * Los objetos puntuales (unidades) viven en una sola celda y se mueven con
+ * {@link #update(Object, float, float)} sólo cuando cambian de celda; los objetos
+ * con área (edificios) se insertan en todas las celdas que tocan.
+ * Las consultas no generan basura: el resultado se añade a un Array del llamador.
+ * Las celdas se crean al meter el primer objeto, así un mapa grande casi vacío sólo
+ * cuesta un puntero por celda.
+ */
+public class SpatialGrid<T> {
+
+    private final float cellSize;
+    private final int cols, rows;
+    private final Array<T>[] cells;       // null hasta que la celda recibe algo
+    private final Array<T> empty = new Array<>(false, 0);
+
+    // Celda actual de cada objeto puntual
+    private final ObjectIntMap<T> pointCells = new ObjectIntMap<>();
+    // Para no repetir objetos con área en consultas por rectángulo
+    private final ObjectSet<T> seen = new ObjectSet<>();
+
+    @SuppressWarnings("unchecked")
+    public SpatialGrid(float width, float height, float cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cells = new Array[cols * rows];
+    }
+
+    private Array<T> cell(int index) {
+        Array<T> cell = cells[index];
+        if (cell == null) cells[index] = cell = new Array<>(false, 4);
+        return cell;
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Objetos puntuales
+    // -------------------------------------------------------------------------------------
+
+    public void insert(T item, float x, float y) {
+        int cell = cellIndex(x, y);
+        cell(cell).add(item);
+        pointCells.put(item, cell);
+    }
+
+    /** Mueve el objeto sólo si cambió de celda. */
+    public void update(T item, float x, float y) {
+        int cell = cellIndex(x, y);
+        int old = pointCells.get(item, -1);
+        if (old == cell) return;
+        if (old >= 0) cells[old].removeValue(item, true);
+        cell(cell).add(item);
+        pointCells.put(item, cell);
+    }
+
+    public void remove(T item) {
+        int old = pointCells.remove(item, -1);
+        if (old >= 0) cells[old].removeValue(item, true);
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Objetos con área
+    // -------------------------------------------------------------------------------------
+
+    public void insert(T item, Rectangle bounds) {
+        int x0 = col(bounds.x), x1 = col(bounds.x + bounds.width);
+        int y0 = row(bounds.y), y1 = row(bounds.y + bounds.height);
+        for (int cy = y0; cy <= y1; cy++)
+            for (int cx = x0; cx <= x1; cx++)
+                cell(cy * cols + cx).add(item);
+    }
+
+    public void remove(T item, Rectangle bounds) {
+        int x0 = col(bounds.x), x1 = col(bounds.x + bounds.width);
+        int y0 = row(bounds.y), y1 = row(bounds.y + bounds.height);
+        for (int cy = y0; cy <= y1; cy++)
+            for (int cx = x0; cx <= x1; cx++) {
+                Array<T> cell = cells[cy * cols + cx];
+                if (cell != null) cell.removeValue(item, true);
+            }
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Consultas
+    // -------------------------------------------------------------------------------------
+
+    /** Objetos de la celda que contiene el punto (candidatos; el llamador hace la prueba exacta). No modificar. */
+    public Array<T> cellAt(float x, float y) {
+        Array<T> cell = cells[cellIndex(x, y)];
+        return cell != null ? cell : empty;
+    }
+
+    /** Añade a {@code out} los objetos de las celdas que tocan el rectángulo, sin repetir. */
+    public void query(float x, float y, float width, float height, Array<T> out) {
+        int x0 = col(x), x1 = col(x + width);
+        int y0 = row(y), y1 = row(y + height);
+        seen.clear();
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                Array<T> cell = cells[cy * cols + cx];
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    T item = cell.items[i];
+                    if (seen.add(item)) out.add(item);
+                }
+            }
+        }
+    }
+
+    public void query(Rectangle area, Array<T> out) {
+        query(area.x, area.y, area.width, area.height, out);
+    }
+
+    /**
+     * Como {@link #query(Rectangle, Array)} pero sólo para objetos puntuales: cada uno vive
+     * en una sola celda, así que no hace falta el conjunto para no repetir (más rápido).
+     */
+    public void queryPoints(Rectangle area, Array<T> out) {
+        int x0 = col(area.x), x1 = col(area.x + area.width);
+        int y0 = row(area.y), y1 = row(area.y + area.height);
+        for (int cy = y0; cy <= y1; cy++)
+            for (int cx = x0; cx <= x1; cx++) {
+                Array<T> cell = cells[cy * cols + cx];
+                if (cell != null) out.addAll(cell);
+            }
+    }
+
+    public void clear() {
+        for (Array<T> cell : cells) if (cell != null) cell.clear();
+        pointCells.clear();
+    }
+
+    public float getCellSize() { return cellSize; }
+    public int getCols() { return cols; }
+    public int getRows() { return rows; }
+
+    private int col(float x) {
+        int c = (int) (x / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(float y) {
+        int r = (int) (y / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    private int cellIndex(float x, float y) {
+        return row(y) * cols + col(x);
+    }
+}
@@ -0,0 +1,208 @@
+package com.armymen.systems;
+
+import java.util.Arrays;
+
+/**
+ * Dirección local de las unidades: llegada suave, separación entre unidades y
+ * esquiva de obstáculos. Sustituye al avance en línea recta de {@link UnitStore#integrate}.
+ *
+ * Los vecinos se buscan en una rejilla de cubos (celda = radio de separación) que se
+ * rehace cada tick por conteo, en O(n), a partir de las posiciones del tick anterior.
+ * Las celdas se dispersan en una tabla de unas 2n entradas, así que ni la memoria ni
+ * el trabajo dependen del tamaño del mapa.
+ * Cada unidad sólo mira las 9 celdas que la rodean y como mucho {@code maxNeighbors}
+ * vecinos, así el coste total es O(n). Como sólo se leen posiciones del tick anterior
+ * y cada unidad escribe su propia fila, se puede repartir entre hilos sin cambiar el resultado.
+ */
+public class SteeringSystem {
+
+    private static final float ARRIVAL_RADIUS = 24f;     // empieza a frenar a esta distancia del destino
+    private static final float MIN_ARRIVAL_SPEED = 0.25f; // fracción mínima de la velocidad al frenar
+    private static final float SEPARATION_SPEED = 60f;    // px/s de empuje con solape total
+    private static final float LOOKAHEAD = 20f;           // antena para detectar edificios delante
+    private static final float SETTLED2 = 0.5f * 0.5f;
+
+    private final OccupancyGrid obstacles;
+    private final float radius;
+    private final float cellSize;
+    private final int cols, rows;
+    private int maxNeighbors;
+
+    // Cubos dispersos: ids ordenados por cubo; bucketStart[b]..bucketStart[b+1] son los del cubo b.
+    // Un cubo puede juntar varias celdas: sortedCell dice de cuál es cada id
+    private int[] bucketStart = new int[1];
+    private int bucketBits;
+    private int[] cellOf = new int[0];
+    private int[] sorted = new int[0];
+    private int[] sortedCell = new int[0];
+    private float[] sortedX = new float[0], sortedY = new float[0]; // posiciones en el mismo orden: lectura seguida
+
+    public SteeringSystem(OccupancyGrid obstacles, float width, float height, float radius, int maxNeighbors) {
+        this.obstacles = obstacles;
+        this.radius = radius;
+        this.cellSize = radius;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.maxNeighbors = maxNeighbors;
+    }
+
+    /** Reparte las unidades en cubos según su posición del tick anterior. Llamar en el hilo principal. */
+    public void rebuild(UnitStore store) {
+        int n = store.size();
+        if (cellOf.length < n) {
+            cellOf = new int[store.x.length];
+            sorted = new int[store.x.length];
+            sortedCell = new int[store.x.length];
+            sortedX = new float[store.x.length];
+            sortedY = new float[store.x.length];
+        }
+        // Tabla de potencia de dos con al menos 2n cubos
+        int bits = Math.max(4, 33 - Integer.numberOfLeadingZeros(Math.max(1, n)));
+        if (bits != bucketBits) {
+            bucketBits = bits;
+            bucketStart = new int[(1 << bits) + 1];
+        }
+        final int buckets = 1 << bits;
+        final int[] bucketStart = this.bucketStart;
+        final float[] px = store.prevX, py = store.prevY;
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < n; i++) {
+            int c = row(py[i]) * cols + col(px[i]);
+            cellOf[i] = c;
+            bucketStart[bucket(c) + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) bucketStart[b + 1] += bucketStart[b];
+        // Relleno estable: dentro de cada cubo los ids quedan en orden creciente
+        for (int i = 0; i < n; i++) {
+            int c = cellOf[i];
+            int k = bucketStart[bucket(c)]++;
+            sorted[k] = i;
+            sortedCell[k] = c;
+            sortedX[k] = px[i];
+            sortedY[k] = py[i];
+        }
+        // bucketStart quedó desplazado un cubo: se recoloca
+        for (int b = buckets; b > 0; b--) bucketStart[b] = bucketStart[b - 1];
+        bucketStart[0] = 0;
+    }
+
+    // Cubo de una celda (dispersión multiplicativa)
+    private int bucket(int cell) {
+        return (cell * 0x9E3779B1) >>> (32 - bucketBits);
+    }
+
+    /** Mueve el rango [from, to) de ids un tick. Requiere {@link #rebuild} antes. */
+    public void steer(UnitStore store, int from, int to, float delta) {
+        final float[] x = store.x, y = store.y, px = store.prevX, py = store.prevY;
+        final int[] sorted = this.sorted, sortedCell = this.sortedCell, bucketStart = this.bucketStart;
+        final float[] nx = sortedX, ny = sortedY;
+        final float[] tx = store.targetX, ty = store.targetY, sp = store.speed;
+        final float r2 = radius * radius;
+
+        for (int i = from; i < to; i++) {
+            float maxStep = sp[i] * delta;
+            float dx = tx[i] - x[i], dy = ty[i] - y[i];
+            float dist = (float) Math.sqrt(dx * dx + dy * dy);
+            boolean settled = dist * dist <= SETTLED2 && isIdle(store, i);
+
+            // Llegada: frena cerca del destino final y se coloca exacto
+            float mx = 0f, my = 0f;
+            if (dist > 0f) {
+                float step = maxStep;
+                if (tx[i] == store.goalX[i] && ty[i] == store.goalY[i] && dist < ARRIVAL_RADIUS)
+                    step *= Math.max(MIN_ARRIVAL_SPEED, dist / ARRIVAL_RADIUS);
+                if (step >= dist) {
+                    mx = dx;
+                    my = dy;
+                } else {
+                    mx = dx / dist * step;
+                    my = dy / dist * step;
+
+                    // Esquiva: si la antena cae en un edificio, se desvía hacia el lado libre
+                    float look = Math.min(LOOKAHEAD, dist);
+                    float fx = x[i] + dx / dist * look, fy = y[i] + dy / dist * look;
+                    if (obstacles.isBlocked(obstacles.cellIndex(fx, fy))
+                        && !obstacles.isBlocked(obstacles.cellIndex(x[i], y[i]))) {
+                        float lx = -dy / dist, ly = dx / dist;
+                        if (obstacles.isBlocked(obstacles.cellIndex(x[i] + lx * look, y[i] + ly * look))) {
+                            lx = -lx;
+                            ly = -ly;
+                        }
+                        mx = lx * step;
+                        my = ly * step;
+                    }
+                }
+            }
+
+            // Separación: empuje proporcional al solape con los vecinos cercanos
+            float sx = 0f, sy = 0f;
+            float ox = px[i], oy = py[i];
+            int c0 = col(ox - radius), c1 = col(ox + radius);
+            int r0 = row(oy - radius), r1 = row(oy + radius);
+            int checked = 0;
+            search:
+            for (int cy = r0; cy <= r1; cy++) {
+                for (int cx = c0; cx <= c1; cx++) {
+                    int cell = cy * cols + cx;
+                    int b = bucket(cell);
+                    for (int k = bucketStart[b], end = bucketStart[b + 1]; k < end; k++) {
+                        if (sortedCell[k] != cell) continue;   // otra celda del mismo cubo
+                        int j = sorted[k];
+                        if (j == i) continue;
+                        if (++checked > maxNeighbors) break search;
+                        float ax = ox - nx[k], ay = oy - ny[k];
+                        float d2 = ax * ax + ay * ay;
+                        if (d2 >= r2) continue;
+                        if (d2 == 0f) {
+                            // Misma posición: se separan por id para que sea determinista
+                            sx += i < j ? -1f : 1f;
+                            continue;
+                        }
+                        float d = (float) Math.sqrt(d2);
+                        float w = (radius - d) / (radius * d);
+                        sx += ax * w;
+                        sy += ay * w;
+                    }
+                }
+            }
+            float push = SEPARATION_SPEED * delta;
+            sx *= push;
+            sy *= push;
+            float s2 = sx * sx + sy * sy;
+            if (s2 > maxStep * maxStep) {
+                float k = maxStep / (float) Math.sqrt(s2);
+                sx *= k;
+                sy *= k;
+            }
+
+            x[i] += mx + sx;
+            y[i] += my + sy;
+
+            // Una unidad parada que es empujada se queda donde la dejan (no vuelve a su hueco)
+            if (settled && (sx != 0f || sy != 0f)) {
+                tx[i] = store.goalX[i] = x[i];
+                ty[i] = store.goalY[i] = y[i];
+            }
+        }
+    }
+
+    /** Máximo de vecinos revisados por unidad y tick. */
+    public void setMaxNeighbors(int maxNeighbors) { this.maxNeighbors = maxNeighbors; }
+    public int getMaxNeighbors() { return maxNeighbors; }
+    public float getRadius() { return radius; }
+
+    private static boolean isIdle(UnitStore store, int i) {
+        return store.flow[i] == null && store.path[i] == null
+            && store.targetX[i] == store.goalX[i] && store.targetY[i] == store.goalY[i];
+    }
+
+    private int col(float x) {
+        int c = (int) (x / cellSize);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(float y) {
+        int r = (int) (y / cellSize);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+}
@@ -0,0 +1,233 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.math.Rectangle;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Terreno del mapa: un tipo de suelo y un elemento (roca, yacimiento) por casilla. El
+ * tamaño del mapa sale de aquí, no de constantes de la pantalla.
+ *
+ * Las casillas se guardan por trozos de {@value #CHUNK_TILES}x{@value #CHUNK_TILES} (un array
+ * de {@value #CHUNK_BYTES} bytes cada uno). Un mapa generado tiene todos los trozos en
+ * memoria; uno abierto de un {@link MapFile} empieza sin ninguno y {@link ChunkStreamer}
+ * los va cargando y descargando según la cámara. Cada trozo lleva un número de versión
+ * que sube cuando cambia su contenido: quien cachea algo por trozo (el render del
+ * terreno) compara versiones en lugar de recibir avisos.
+ *
+ * Sólo se usa desde el hilo principal; el hilo de carga trabaja con sus propios arrays.
+ */
+public class TerrainMap {
+
+    public static final byte GRASS = 0, DIRT = 1, SAND = 2, CONCRETE = 3;
+    public static final int TYPE_COUNT = 4;
+    public static final byte NONE = 0, ROCK = 1, DEPOSIT = 2;
+    public static final int FEATURE_COUNT = 3;
+    public static final int CHUNK_TILES = 16;
+    public static final int CHUNK_AREA = CHUNK_TILES * CHUNK_TILES;
+    public static final int CHUNK_BYTES = 2 * CHUNK_AREA;   // tipos y después elementos
+
+    private static final float EDGE = 0.01f;
+
+    private final float width, height;
+    private final float tileSize;
+    private final int tilesX, tilesY;
+    private final int chunksX, chunksY;
+    private final byte[][] chunks;          // null = trozo no cargado
+    private final boolean[] pinned;         // editados: ya no se pueden descargar
+    private final int[] chunkVersions;
+    private final MapFile source;           // null = mapa entero en memoria
+    private int residentChunks;
+
+    /** Mapa de {@code width}x{@code height} unidades todo de césped, entero en memoria. */
+    public TerrainMap(float width, float height, float tileSize) {
+        this(width, height, tileSize, null);
+        for (int i = 0; i < chunks.length; i++) chunks[i] = new byte[CHUNK_BYTES];
+        residentChunks = chunks.length;
+    }
+
+    private TerrainMap(float width, float height, float tileSize, MapFile source) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = Math.max(1, (int) Math.ceil(width / tileSize));
+        this.tilesY = Math.max(1, (int) Math.ceil(height / tileSize));
+        this.chunksX = (tilesX + CHUNK_TILES - 1) / CHUNK_TILES;
+        this.chunksY = (tilesY + CHUNK_TILES - 1) / CHUNK_TILES;
+        this.chunks = new byte[chunksX * chunksY][];
+        this.pinned = new boolean[chunks.length];
+        this.chunkVersions = new int[chunks.length];
+        this.source = source;
+    }
+
+    /** Abre un mapa en disco sin cargar nada todavía (ver {@link ChunkStreamer}). */
+    public static TerrainMap open(Path file) {
+        MapFile source = MapFile.open(file);
+        return new TerrainMap(source.getWidth(), source.getHeight(), source.getTileSize(), source);
+    }
+
+    /**
+     * Terreno generado con ruido de valor: césped con manchas de tierra y arena.
+     * Sólo depende de la semilla (todos los clientes de una partida en red generan lo mismo).
+     */
+    public static TerrainMap generate(float width, float height, float tileSize, long seed) {
+        TerrainMap map = new TerrainMap(width, height, tileSize);
+        for (int ty = 0; ty < map.tilesY; ty++) {
+            for (int tx = 0; tx < map.tilesX; tx++) {
+                map.chunks[map.chunkOf(tx, ty)][local(tx, ty)] = generatedType(tx, ty, seed);
+            }
+        }
+        return map;
+    }
+
+    /** Tipo de suelo de {@link #generate} en una casilla (también lo usa {@link MapFile#generate}). */
+    static byte generatedType(int tx, int ty, long seed) {
+        float n = noise(tx / 12f, ty / 12f, seed) * 0.7f + noise(tx / 4f, ty / 4f, seed + 1) * 0.3f;
+        return n > 0.68f ? SAND : n > 0.58f ? DIRT : GRASS;
+    }
+
+    /** Tipo de suelo; en un trozo no cargado, césped. */
+    public byte getType(int tx, int ty) {
+        byte[] chunk = chunks[chunkOf(tx, ty)];
+        return chunk != null ? chunk[local(tx, ty)] : GRASS;
+    }
+
+    /** Elemento de la casilla; en un trozo no cargado, ninguno. */
+    public byte getFeature(int tx, int ty) {
+        byte[] chunk = chunks[chunkOf(tx, ty)];
+        return chunk != null ? chunk[CHUNK_AREA + local(tx, ty)] : NONE;
+    }
+
+    /**
+     * Cambia el suelo de una casilla. El trozo queda fijo en memoria (el fichero no se
+     * toca); si no estaba cargado se lee en el momento, sin esperar al hilo de carga.
+     */
+    public void setType(int tx, int ty, byte type) {
+        int c = chunkOf(tx, ty);
+        if (chunks[c] == null) {
+            byte[] data = new byte[CHUNK_BYTES];
+            source.readChunk(c, data);
+            install(c, data);
+        }
+        pinned[c] = true;
+        int i = local(tx, ty);
+        if (chunks[c][i] == type) return;
+        chunks[c][i] = type;
+        chunkVersions[c]++;
+    }
+
+    /** Pinta con {@code type} las casillas que toca el rectángulo (p. ej. el suelo bajo un edificio). */
+    public void paint(Rectangle area, byte type) {
+        int x0 = clamp((int) (area.x / tileSize), tilesX), x1 = clamp((int) ((area.x + area.width - EDGE) / tileSize), tilesX);
+        int y0 = clamp((int) (area.y / tileSize), tilesY), y1 = clamp((int) ((area.y + area.height - EDGE) / tileSize), tilesY);
+        for (int ty = y0; ty <= y1; ty++)
+            for (int tx = x0; tx <= x1; tx++) setType(tx, ty, type);
+    }
+
+    /** Escribe el suelo de todas las casillas (fila a fila, {@link #getTileCount()} bytes) para guardarlo. */
+    public void writeTiles(ByteBuffer out) {
+        for (int ty = 0; ty < tilesY; ty++)
+            for (int tx = 0; tx < tilesX; tx++) out.put(getType(tx, ty));
+    }
+
+    /**
+     * Sustituye el suelo de todas las casillas (al cargar). Cuenta como cambio de todos los
+     * trozos. Devuelve false si algún tipo no existe (fichero dañado).
+     */
+    public boolean readTiles(ByteBuffer in) {
+        if (source != null) throw new IllegalStateException("El terreno viene de " + source.getPath());
+        boolean valid = true;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                byte t = in.get();
+                if (t < 0 || t >= TYPE_COUNT) valid = false;
+                chunks[chunkOf(tx, ty)][local(tx, ty)] = t;
+            }
+        }
+        for (int i = 0; i < chunkVersions.length; i++) chunkVersions[i]++;
+        return valid;
+    }
+
+    // -------------------------------------------------------------------------------------
+    // Trozos (índice = cy * chunksX + cx)
+    // -------------------------------------------------------------------------------------
+
+    public boolean isResident(int chunk) { return chunks[chunk] != null; }
+
+    /** Pone los datos de un trozo recién leído. Devuelve false (y no hace nada) si ya estaba. */
+    public boolean install(int chunk, byte[] data) {
+        if (chunks[chunk] != null) return false;
+        chunks[chunk] = data;
+        chunkVersions[chunk]++;
+        residentChunks++;
+        return true;
+    }
+
+    /**
+     * Descarga un trozo y devuelve su array para reutilizarlo, o null si no estaba o está
+     * editado. La versión no cambia: lo que ya se dibujó con él sigue valiendo.
+     */
+    public byte[] evict(int chunk) {
+        byte[] data = chunks[chunk];
+        if (data == null || pinned[chunk]) return null;
+        chunks[chunk] = null;
+        residentChunks--;
+        return data;
+    }
+
+    public boolean isPinned(int chunk) { return pinned[chunk]; }
+
+    /** Cierra el fichero del mapa, si lo hay. */
+    public void close() {
+        if (source != null) source.close();
+    }
+
+    public float getWidth() { return width; }
+    public float getHeight() { return height; }
+    public float getTileSize() { return tileSize; }
+    public int getTilesX() { return tilesX; }
+    public int getTilesY() { return tilesY; }
+    public int getTileCount() { return tilesX * tilesY; }
+    public int getChunksX() { return chunksX; }
+    public int getChunksY() { return chunksY; }
+    public int getChunkCount() { return chunks.length; }
+    public int getChunkVersion(int chunk) { return chunkVersions[chunk]; }
+    public int getResidentChunks() { return residentChunks; }
+    /** Fichero del que se lee el mapa, o null si está entero en memoria. */
+    public MapFile getSource() { return source; }
+    public boolean isStreamed() { return source != null; }
+
+    private int chunkOf(int tx, int ty) {
+        return (ty / CHUNK_TILES) * chunksX + tx / CHUNK_TILES;
+    }
+
+    private static int local(int tx, int ty) {
+        return (ty % CHUNK_TILES) * CHUNK_TILES + tx % CHUNK_TILES;
+    }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : v >= size ? size - 1 : v;
+    }
+
+    // Ruido de valor: valores al azar en los enteros, interpolados suavemente entre ellos
+    static float noise(float x, float y, long seed) {
+        int x0 = (int) Math.floor(x), y0 = (int) Math.floor(y);
+        float fx = smooth(x - x0), fy = smooth(y - y0);
+        float a = lattice(x0, y0, seed), b = lattice(x0 + 1, y0, seed);
+        float c = lattice(x0, y0 + 1, seed), d = lattice(x0 + 1, y0 + 1, seed);
+        float top = a + (b - a) * fx, bottom = c + (d - c) * fx;
+        return top + (bottom - top) * fy;
+    }
+
+    private static float smooth(float t) {
+        return t * t * (3f - 2f * t);
+    }
+
+    static float lattice(int x, int y, long seed) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (y * 0xC2B2AE3D27D4EB4FL);
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return (h >>> 40) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,132 @@
+package com.armymen.systems;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Registro central de sprites compartidos.
+ * Todas las imágenes se empaquetan en tiempo de ejecución en un único atlas
+ * (PixmapPacker), así el mundo entero se dibuja con la misma textura y el
+ * SpriteBatch no tiene que vaciarse al cambiar de entidad.
+ * Las entidades piden prestada la región con {@link #acquire(String)} y la
+ * devuelven con {@link #release(String)}.
+ * Si hay un AssetManager con la imagen ya cargada se usa esa (sin tocar el disco).
+ */
+public final class TextureRegistry {
+
+    private static final int PAGE_SIZE = 2048;
+    private static final int PADDING = 2;
+
+    private static final ObjectMap<String, Entry> entries = new ObjectMap<>();
+    private static PixmapPacker packer;
+    private static TextureAtlas atlas;
+    private static AssetManager assets;
+
+    private static final class Entry {
+        final TextureRegion region;
+        int refCount;
+
+        Entry(TextureRegion region) {
+            this.region = region;
+        }
+    }
+
+    private TextureRegistry() {}
+
+    /** AssetManager del que tomar las imágenes precargadas (null = leer del disco). */
+    public static void setAssetManager(AssetManager manager) {
+        assets = manager;
+    }
+
+    /** Empaqueta de una vez todas las imágenes indicadas (evita re-subir la página por cada sprite nuevo). */
+    public static void preload(String... paths) {
+        boolean added = false;
+        for (String path : paths) {
+            if (entries.containsKey(path) || (atlas != null && atlas.findRegion(path) != null)) continue;
+            pack(path);
+            added = true;
+        }
+        if (added) updateAtlas();
+    }
+
+    /** Devuelve la región compartida de la ruta dada, empaquetándola la primera vez. */
+    public static TextureRegion acquire(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            TextureAtlas.AtlasRegion region = atlas != null ? atlas.findRegion(path) : null;
+            if (region == null) {
+                pack(path);
+                updateAtlas();
+                region = atlas.findRegion(path);
+            }
+            entry = new Entry(region);
+            entries.put(path, entry);
+        }
+        entry.refCount++;
+        return entry.region;
+    }
+
+    /** Devuelve una referencia. La región queda en el atlas; la memoria se libera con {@link #disposeAll()}. */
+    public static void release(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            throw new GdxRuntimeException("Textura no registrada: " + path);
+        }
+        if (--entry.refCount <= 0) {
+            entries.remove(path);
+        }
+    }
+
+    public static int getRefCount(String path) {
+        Entry entry = entries.get(path);
+        return entry == null ? 0 : entry.refCount;
+    }
+
+    /** Número de páginas (texturas de GPU) del atlas; idealmente 1. */
+    public static int getPageCount() {
+        return atlas == null ? 0 : atlas.getTextures().size;
+    }
+
+    /** Libera el atlas y el empaquetador (cierre de pantalla). */
+    public static void disposeAll() {
+        entries.clear();
+        if (atlas != null) {
+            atlas.dispose();
+            atlas = null;
+        }
+        if (packer != null) {
+            packer.dispose();
+            packer = null;
+        }
+    }
+
+    private static void pack(String path) {
+        if (packer == null) {
+            packer = new PixmapPacker(PAGE_SIZE, PAGE_SIZE, Pixmap.Format.RGBA8888, PADDING, true);
+        }
+        if (assets != null && assets.isLoaded(path)) {
+            // Ya decodificada en segundo plano; una vez en el atlas no hace falta en memoria
+            packer.pack(path, assets.get(path, Pixmap.class));
+            assets.unload(path);
+            return;
+        }
+        Pixmap pixmap = new Pixmap(Gdx.files.internal(path));
+        packer.pack(path, pixmap);
+        pixmap.dispose();
+    }
+
+    private static void updateAtlas() {
+        if (atlas == null) {
+            atlas = packer.generateTextureAtlas(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
+        } else {
+            packer.updateTextureAtlas(atlas, Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
+        }
+    }
+}
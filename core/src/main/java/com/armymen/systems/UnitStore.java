@@ -0,0 +1,219 @@
+package com.armymen.systems;
+
+import java.util.Arrays;
+
+/**
+ * Almacén de unidades orientado a datos (structure-of-arrays).
+ * Posición, destino y velocidad viven en arrays primitivos indexados por id,
+ * así el movimiento de todo el ejército es un único bucle sin objetos ni basura.
+ * {@link com.armymen.entities.Unit} es sólo una vista sobre una fila de este almacén.
+ */
+public class UnitStore {
+
+    private static final float WAYPOINT_REACHED2 = 4f * 4f;
+
+    public float[] x, y;
+    public float[] prevX, prevY;       // posición del tick anterior (interpolación al dibujar)
+    public float[] targetX, targetY;   // hacia dónde avanza en este tick (paso intermedio o destino)
+    public float[] goalX, goalY;       // destino final de la orden
+    public float[] speed;
+    public FlowField[] flow;           // campo de flujo que sigue, o null si va en línea recta
+    public int[] flowRelease;          // coste del campo desde el que puede soltarlo si ve su hueco
+    public PathHandle[] path;          // camino A* que sigue, o null
+    public int[] pathIndex;            // siguiente punto de paso del camino
+    public int[] owner;                // jugador dueño de la unidad
+    private int size;
+
+    public UnitStore(int initialCapacity) {
+        int cap = Math.max(1, initialCapacity);
+        x = new float[cap];
+        y = new float[cap];
+        prevX = new float[cap];
+        prevY = new float[cap];
+        targetX = new float[cap];
+        targetY = new float[cap];
+        goalX = new float[cap];
+        goalY = new float[cap];
+        speed = new float[cap];
+        flow = new FlowField[cap];
+        flowRelease = new int[cap];
+        path = new PathHandle[cap];
+        pathIndex = new int[cap];
+        owner = new int[cap];
+    }
+
+    /** Añade una unidad quieta en (px, py) y devuelve su id. */
+    public int add(float px, float py, float unitSpeed) {
+        if (size == x.length) grow(size * 2);
+        int id = size++;
+        x[id] = px;
+        y[id] = py;
+        prevX[id] = px;
+        prevY[id] = py;
+        targetX[id] = px;
+        targetY[id] = py;
+        goalX[id] = px;
+        goalY[id] = py;
+        speed[id] = unitSpeed;
+        return id;
+    }
+
+    /** Destino en línea recta. */
+    public void setTarget(int id, float tx, float ty) {
+        targetX[id] = goalX[id] = tx;
+        targetY[id] = goalY[id] = ty;
+        flow[id] = null;
+        path[id] = null;
+    }
+
+    /** Destino siguiendo un campo de flujo compartido hasta acercarse a (tx, ty). */
+    public void setFlowTarget(int id, FlowField field, float tx, float ty) {
+        goalX[id] = tx;
+        goalY[id] = ty;
+        flow[id] = field;
+        flowRelease[id] = field.releaseCost(tx, ty);
+        path[id] = null;
+    }
+
+    /** Destino siguiendo los puntos de paso de un camino A* (puede estar aún pendiente). */
+    public void setPathTarget(int id, PathHandle handle) {
+        goalX[id] = handle.getGoalX();
+        goalY[id] = handle.getGoalY();
+        targetX[id] = x[id];               // espera quieta hasta que el camino esté listo
+        targetY[id] = y[id];
+        flow[id] = null;
+        path[id] = handle;
+        pathIndex[id] = 0;
+    }
+
+    /**
+     * Para cada unidad que sigue un campo de flujo, fija como objetivo del tick el
+     * centro de la celda siguiente. Suelta el campo y va recta a su hueco en cuanto está
+     * tan cerca del centro como su hueco y lo ve sin obstáculos (así una formación se abre
+     * al llegar en vez de pasar todos por la celda del destino), o si no, al llegar al centro.
+     * Sólo lee los campos y escribe su propia fila: se puede repartir entre hilos.
+     */
+    public void followFlow(int from, int to) {
+        for (int i = from; i < to; i++) {
+            FlowField f = flow[i];
+            if (f == null) continue;
+            OccupancyGrid grid = f.getGrid();
+            int cell = grid.cellIndex(x[i], y[i]);
+            int next = f.nextCell(cell);
+            int cost = f.costAt(cell);
+            if (next < 0 || cost <= FlowField.ARRIVE_COST
+                || cost <= flowRelease[i] && grid.isSegmentFree(x[i], y[i], goalX[i], goalY[i])) {
+                targetX[i] = goalX[i];
+                targetY[i] = goalY[i];
+                flow[i] = null;
+            } else {
+                targetX[i] = grid.centerX(next);
+                targetY[i] = grid.centerY(next);
+            }
+        }
+    }
+
+    /**
+     * Integra el movimiento de todas las unidades hacia su destino.
+     * Bucle plano sobre arrays, sin asignaciones: el JIT puede desenrollarlo.
+     */
+    public void integrate(float delta) {
+        integrate(0, size, delta);
+    }
+
+    /** Integra el rango [from, to) de ids. */
+    public void integrate(int from, int to, float delta) {
+        final float[] x = this.x, y = this.y, tx = targetX, ty = targetY, sp = speed;
+        for (int i = from; i < to; i++) {
+            float dx = tx[i] - x[i];
+            float dy = ty[i] - y[i];
+            float len2 = dx * dx + dy * dy;
+            float step = sp[i] * delta;
+            if (len2 <= step * step) {
+                // Llega (o ya estaba): se coloca exactamente en el destino
+                x[i] = tx[i];
+                y[i] = ty[i];
+            } else {
+                float k = step / (float) Math.sqrt(len2);
+                x[i] += dx * k;
+                y[i] += dy * k;
+            }
+        }
+    }
+
+    /** Guarda la posición actual como la del tick anterior. Llamar al empezar cada tick. */
+    public void savePrevious() {
+        System.arraycopy(x, 0, prevX, 0, size);
+        System.arraycopy(y, 0, prevY, 0, size);
+    }
+
+    /** Posición X interpolada entre el tick anterior y el actual. */
+    public float renderX(int id, float alpha) {
+        return prevX[id] + (x[id] - prevX[id]) * alpha;
+    }
+
+    /** Posición Y interpolada entre el tick anterior y el actual. */
+    public float renderY(int id, float alpha) {
+        return prevY[id] + (y[id] - prevY[id]) * alpha;
+    }
+
+    /**
+     * Para cada unidad con camino A*, fija como objetivo del tick el siguiente punto
+     * de paso; al llegar al último va directa a su destino. Se puede repartir entre hilos.
+     */
+    public void followPath(int from, int to) {
+        for (int i = from; i < to; i++) {
+            PathHandle p = path[i];
+            if (p == null) continue;
+            switch (p.getStatus()) {
+                case PENDING:
+                    break;
+                case FAILED:
+                    targetX[i] = goalX[i];
+                    targetY[i] = goalY[i];
+                    path[i] = null;
+                    break;
+                case READY: {
+                    int k = pathIndex[i];
+                    int n = p.size();
+                    while (k < n) {
+                        float dx = p.getX(k) - x[i], dy = p.getY(k) - y[i];
+                        if (dx * dx + dy * dy > WAYPOINT_REACHED2) break;
+                        k++;
+                    }
+                    if (k >= n) {
+                        targetX[i] = goalX[i];
+                        targetY[i] = goalY[i];
+                        path[i] = null;
+                    } else {
+                        targetX[i] = p.getX(k);
+                        targetY[i] = p.getY(k);
+                        pathIndex[i] = k;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        targetX = Arrays.copyOf(targetX, capacity);
+        targetY = Arrays.copyOf(targetY, capacity);
+        goalX = Arrays.copyOf(goalX, capacity);
+        goalY = Arrays.copyOf(goalY, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        flow = Arrays.copyOf(flow, capacity);
+        flowRelease = Arrays.copyOf(flowRelease, capacity);
+        path = Arrays.copyOf(path, capacity);
+        pathIndex = Arrays.copyOf(pathIndex, capacity);
+        owner = Arrays.copyOf(owner, capacity);
+    }
+}
@@ -0,0 +1,73 @@
+package com.armymen.headless;
+
+import com.armymen.entities.Unit;
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.FormationPlanner;
+import com.armymen.systems.OccupancyGrid;
+import com.armymen.systems.UnitStore;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Comprueba que un grupo grande llega en formación sin pasar todo por el centro: manda
+ * {@code units} unidades apiñadas al otro lado de un mapa liso en cada forma y cuenta
+ * cuántas pasan a menos de {@value #CENTER_CELLS} celdas del destino teniendo el hueco más
+ * lejos. Antes todas convergían ahí y luego se abrían (y se atascaban); ahora sólo lo
+ * cruzan las de la columna central. Falla si lo hace más del {@value #MAX_CENTER_PERCENT}% del grupo.
+ */
+public class FormationScenario {
+
+    private static final int MAX_CENTER_PERCENT = 10;
+    private static final float CENTER_CELLS = 4f;
+    private static final float SPACING = 30f;
+    private static final float ARRIVED = 8f;
+
+    public int units = 300;
+    public int maxTicks = 3000;
+
+    public String run() {
+        StringBuilder out = new StringBuilder();
+        boolean ok = true;
+        for (FormationPlanner.Shape shape : FormationPlanner.Shape.values()) {
+            GameWorld world = new GameWorld(6000f, 4000f, 0, units, 1);
+            world.setFormation(0, shape);
+            Array<Unit> group = new Array<>(false, units);
+            int cols = (int) Math.ceil(Math.sqrt(units));
+            for (int i = 0; i < units; i++) {
+                group.add(world.spawnUnit(400f + (i % cols) * SPACING, 1700f + (i / cols) * SPACING, 0));
+            }
+            Vector2 dest = new Vector2(4500f, 2000f);
+            world.orderMove(group, dest);
+
+            UnitStore store = world.getUnitStore();
+            OccupancyGrid grid = world.getOccupancy();
+            float radius = CENTER_CELLS * grid.getCellSize();
+            boolean[] crossed = new boolean[units];
+            int ticks = 0, arrived = 0;
+            while (ticks < maxTicks) {
+                world.step(1f / 30f);
+                ticks++;
+                arrived = 0;
+                for (int i = 0; i < units; i++) {
+                    int id = group.get(i).getId();
+                    if (store.x[id] != store.goalX[id] || store.y[id] != store.goalY[id]) {
+                        if (dest.dst(store.x[id], store.y[id]) < radius
+                            && dest.dst(store.goalX[id], store.goalY[id]) > radius + grid.getCellSize()) crossed[i] = true;
+                    }
+                    float dx = store.goalX[id] - store.x[id], dy = store.goalY[id] - store.y[id];
+                    if (dx * dx + dy * dy <= ARRIVED * ARRIVED) arrived++;
+                }
+                if (arrived == units) break;
+            }
+            int through = 0;
+            for (boolean c : crossed) if (c) through++;
+            boolean shapeOk = through * 100 <= units * MAX_CENTER_PERCENT;
+            ok &= shapeOk;
+            out.append(String.format(java.util.Locale.ROOT, "%-5s ticks=%d  llegadas=%d de %d  por el centro=%d  %s%n",
+                shape, ticks, arrived, units, through, shapeOk ? "OK" : "MAL"));
+            world.dispose();
+        }
+        return out.append(ok ? "OK" : "MAL: el grupo pasa por el centro del destino").toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.armymen.headless;
+
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.MapFile;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/**
+ * Lanza la simulación con el backend headless de libGDX (sin ventana ni GPU)
+ * y ejecuta el escenario de carga.
+ * Opciones como clave=valor: units, buildings, ticks, warmup, map, seed, parallel.
+ * Con replay=fichero repite una grabación de órdenes en lugar del escenario de carga, y con
+ * lockstep=jugadores juega una partida en red por loopback (ticks, seed y units valen también).
+ * makemap=fichero.amap escribe un mapa en disco de lado map, y stream=fichero.amap lo recorre
+ * con la cámara cargando trozos en segundo plano (ticks = frames). formation=unidades manda un
+ * grupo en cada forma y comprueba que no pasa entero por la celda del destino.
+ */
+public class HeadlessLauncher {
+    public static void main(String[] args) {
+        final LoadScenario scenario = new LoadScenario();
+        final ReplayScenario replay = new ReplayScenario();
+        final LockstepScenario lockstep = new LockstepScenario();
+        final StreamingScenario streaming = new StreamingScenario();
+        final FormationScenario formation = new FormationScenario();
+        String makeMap = null;
+        boolean network = false, formations = false;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) continue;
+            String key = arg.substring(0, eq), value = arg.substring(eq + 1);
+            switch (key) {
+                case "units": scenario.units = lockstep.extraUnits = Integer.parseInt(value); break;
+                case "buildings": scenario.buildings = Integer.parseInt(value); break;
+                case "ticks": scenario.ticks = Integer.parseInt(value); break;
+                case "warmup": scenario.warmupTicks = Integer.parseInt(value); break;
+                case "map": scenario.mapSize = Float.parseFloat(value); break;
+                case "seed": scenario.seed = Long.parseLong(value); break;
+                case "parallel": scenario.parallel = replay.parallel = Boolean.parseBoolean(value); break;
+                case "replay": replay.file = value; break;
+                case "lockstep": lockstep.players = Integer.parseInt(value); network = true; break;
+                case "makemap": makeMap = value; break;
+                case "stream": streaming.file = value; break;
+                case "formation": formation.units = Integer.parseInt(value); formations = true; break;
+                default: System.err.println("Opción desconocida: " + key);
+            }
+        }
+
+        lockstep.ticks = scenario.ticks;
+        lockstep.seed = scenario.seed;
+        streaming.frames = scenario.ticks;
+        final boolean runLockstep = network;
+        final boolean runFormation = formations;
+
+        // El mapa se escribe antes de arrancar nada (así se puede generar y recorrer de una vez)
+        if (makeMap != null) {
+            long start = System.nanoTime();
+            MapFile.generate(java.nio.file.Paths.get(makeMap), scenario.mapSize, GameWorld.TILE_SIZE, scenario.seed);
+            System.out.printf(java.util.Locale.ROOT, "Mapa %s de %.0fx%.0f escrito en %.1f ms%n",
+                makeMap, scenario.mapSize, scenario.mapSize, (System.nanoTime() - start) / 1e6);
+            if (streaming.file == null) return;
+        }
+
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1; // no necesitamos el bucle de render
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                if (runLockstep) {
+                    System.out.println("Lockstep: jugadores=" + lockstep.players + " ticks=" + lockstep.ticks);
+                    System.out.println(lockstep.run());
+                    Gdx.app.exit();
+                    return;
+                }
+                if (runFormation) {
+                    System.out.println("Formación: units=" + formation.units);
+                    System.out.println(formation.run());
+                    Gdx.app.exit();
+                    return;
+                }
+                if (streaming.file != null) {
+                    System.out.println("Streaming: " + streaming.file + " frames=" + streaming.frames);
+                    System.out.println(streaming.run());
+                    Gdx.app.exit();
+                    return;
+                }
+                if (replay.file != null) {
+                    System.out.println("Repetición: " + replay.file + " parallel=" + replay.parallel);
+                    System.out.println(replay.run());
+                    Gdx.app.exit();
+                    return;
+                }
+                System.out.println("Escenario: units=" + scenario.units + " buildings=" + scenario.buildings
+                    + " ticks=" + scenario.ticks + " map=" + scenario.mapSize + " parallel=" + scenario.parallel);
+                System.out.println(scenario.run());
+                Gdx.app.exit();
+            }
+        }, configuration);
+    }
+}
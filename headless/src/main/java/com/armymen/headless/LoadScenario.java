@@ -0,0 +1,128 @@
+package com.armymen.headless;
+
+import com.armymen.entities.Unit;
+import com.armymen.simulation.GameWorld;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Escenario de carga para la simulación sin GPU.
+ * Crea un mundo grande, da órdenes de movimiento y construcción a intervalos fijos
+ * y mide ticks por segundo y ritmo de asignación de memoria del hilo de simulación.
+ */
+public class LoadScenario {
+
+    private static final float TICK = 1f / 30f;
+    private static final int MOVE_ORDER_EVERY = 30;  // ticks entre órdenes de movimiento (1 s)
+    private static final int BUILD_ORDER_EVERY = 150;
+    private static final int MOVE_GROUP_SIZE = 200;
+
+    public int units = 50_000;
+    public int buildings = 2_000;
+    public int ticks = 3_000;
+    public int warmupTicks = 300;
+    public float mapSize = 16_000f;
+    public long seed = 42L;
+    public boolean parallel = true;
+
+    /** Resultado de una ejecución. */
+    public static class Report {
+        public int ticks;
+        public long nanos;
+        public long allocatedBytes;
+        public long gcCount;
+        public long gcMillis;
+        public int finalBuildings;
+        public long fogStamps;
+
+        public double ticksPerSecond() { return ticks / (nanos / 1e9); }
+        public double millisPerTick() { return nanos / 1e6 / ticks; }
+        public double bytesPerTick() { return (double) allocatedBytes / ticks; }
+        public double allocMBPerSecond() { return allocatedBytes / (1024.0 * 1024.0) / (nanos / 1e9); }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.ROOT,
+                "ticks=%d  %.1f ticks/s  %.3f ms/tick  alloc=%.1f B/tick (%.2f MB/s)  gc=%d (%d ms)  buildings=%d"
+                    + "  fog=%.1f círculos/tick",
+                ticks, ticksPerSecond(), millisPerTick(), bytesPerTick(), allocMBPerSecond(),
+                gcCount, gcMillis, finalBuildings, (double) fogStamps / ticks);
+        }
+    }
+
+    private Random rnd;
+    private GameWorld world;
+    private final Array<Unit> group = new Array<>(false, MOVE_GROUP_SIZE);
+    private final Vector2 orderPos = new Vector2();
+
+    public GameWorld createWorld() {
+        rnd = new Random(seed);
+        world = GameWorld.createLoadTest(mapSize, units, buildings, rnd);
+        world.setParallel(parallel);
+        return world;
+    }
+
+    public Report run() {
+        createWorld();
+        for (int t = 0; t < warmupTicks; t++) tick(t);
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCount0 = gcCount(), gcMillis0 = gcMillis();
+        long alloc0 = threads.getThreadAllocatedBytes(threadId);
+        long stamps0 = world.getFog().getStampCount();
+        long start = System.nanoTime();
+
+        for (int t = warmupTicks; t < warmupTicks + ticks; t++) tick(t);
+
+        Report report = new Report();
+        report.nanos = System.nanoTime() - start;
+        report.allocatedBytes = threads.getThreadAllocatedBytes(threadId) - alloc0;
+        report.gcCount = gcCount() - gcCount0;
+        report.gcMillis = gcMillis() - gcMillis0;
+        report.ticks = ticks;
+        report.finalBuildings = world.getBuildings().size;
+        report.fogStamps = world.getFog().getStampCount() - stamps0;
+        return report;
+    }
+
+    private void tick(int t) {
+        if (t % MOVE_ORDER_EVERY == 0) issueMoveOrder();
+        if (t % BUILD_ORDER_EVERY == 0) issueBuildOrder();
+        world.step(TICK);
+    }
+
+    private void issueMoveOrder() {
+        Array<Unit> all = world.getUnits();
+        group.clear();
+        int start = rnd.nextInt(all.size);
+        for (int i = 0; i < MOVE_GROUP_SIZE && i < all.size; i++) {
+            group.add(all.get((start + i) % all.size));
+        }
+        orderPos.set(rnd.nextFloat() * mapSize, rnd.nextFloat() * mapSize);
+        world.orderMove(group, orderPos);
+    }
+
+    private void issueBuildOrder() {
+        orderPos.set(rnd.nextFloat() * mapSize, rnd.nextFloat() * mapSize);
+        world.orderBuildStorage(orderPos);
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+}
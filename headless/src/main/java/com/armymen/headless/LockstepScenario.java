@@ -0,0 +1,138 @@
+package com.armymen.headless;
+
+import com.armymen.entities.Unit;
+import com.armymen.net.LockstepClient;
+import com.armymen.net.LockstepServer;
+import com.armymen.net.LockstepSession;
+import com.armymen.simulation.Command;
+import com.armymen.simulation.GameWorld;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Partida en red de prueba dentro de un solo proceso: un servidor lockstep en loopback y
+ * un cliente con su propio mundo por jugador. Cada jugador da órdenes al azar (cada uno
+ * con su semilla) y al final se comparan las huellas de todos los mundos.
+ * Mide bytes enviados por turno, duración de los turnos y latencia.
+ */
+public class LockstepScenario {
+
+    private static final long CONNECT_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final long RUN_TIMEOUT_NANOS = 120_000_000_000L;
+    private static final float TICK_SECONDS = 1f / 30f;
+
+    public int players = 2;
+    public int ticks = 600;
+    public int extraUnits = 200;        // por encima de las bases de createDefault
+    public int orderEvery = 15;         // ticks entre órdenes de cada jugador (de media)
+    public long seed = 42L;
+
+    public String run() {
+        LockstepServer server = null;
+        LockstepClient[] clients = new LockstepClient[players];
+        try {
+            server = new LockstepServer(0, players);
+            server.start();
+            for (int p = 0; p < players; p++) clients[p] = LockstepClient.connect("localhost", server.getPort());
+
+            long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+            while (!allStarted(clients)) {
+                if (System.nanoTime() > deadline) return "No conectaron todos los jugadores";
+                for (LockstepClient c : clients) c.poll();
+                Thread.yield();
+            }
+
+            LockstepSession[] sessions = new LockstepSession[players];
+            Random[] scripts = new Random[players];
+            for (int i = 0; i < players; i++) {
+                LockstepClient c = clients[i];
+                sessions[c.getLocalPlayer()] = new LockstepSession(createWorld(), c, TICK_SECONDS);
+                scripts[c.getLocalPlayer()] = new Random(seed + c.getLocalPlayer());
+            }
+            return simulate(sessions, scripts);
+        } catch (IOException e) {
+            return "Error de red: " + e;
+        } finally {
+            for (LockstepClient c : clients) if (c != null) c.close();
+            if (server != null) server.close();
+        }
+    }
+
+    private String simulate(LockstepSession[] sessions, Random[] scripts) {
+        IntArray ids = new IntArray();
+        int stalls = 0;
+        long start = System.nanoTime();
+        boolean running = true;
+        while (running) {
+            if (System.nanoTime() - start > RUN_TIMEOUT_NANOS) return "Tiempo agotado (¿se perdió un paquete?)";
+            running = false;
+            for (int p = 0; p < sessions.length; p++) {
+                LockstepSession s = sessions[p];
+                GameWorld world = s.getWorld();
+                if (world.getTick() >= ticks) continue;
+                running = true;
+                if (scripts[p].nextInt(orderEvery) == 0) giveOrder(s, world, p, scripts[p], ids);
+                if (s.advance(1) == 0) stalls++;
+            }
+            if (running) Thread.yield();
+        }
+        long nanos = System.nanoTime() - start;
+
+        long hash = sessions[0].getWorld().stateHash();
+        boolean same = true;
+        int desyncTurn = -1;
+        for (LockstepSession s : sessions) {
+            if (s.getWorld().stateHash() != hash) same = false;
+            if (s.getDesyncTurn() >= 0) desyncTurn = s.getDesyncTurn();
+        }
+
+        LockstepSession first = sessions[0];
+        LockstepClient client = first.getClient();
+        int turns = Math.max(1, first.getTurnsSent());
+        return String.format(java.util.Locale.ROOT,
+            "jugadores=%d  ticks=%d  %.1f ms  turnos=%d  ticks/turno=%d  rtt=%.3f ms  esperas=%d%n"
+                + "enviado=%.1f B/turno  recibido=%.1f B/turno (jugador 1)%n"
+                + "hash=%016x  %s",
+            sessions.length, ticks, nanos / 1e6, first.getTurn(), first.getTurnTicks(), first.getRttMillis(), stalls,
+            (double) client.getBytesSent() / turns, (double) client.getBytesReceived() / turns, hash,
+            same && desyncTurn < 0 ? "OK" : "DESINCRONIZADO (turno " + desyncTurn + ")");
+    }
+
+    // Todos los clientes parten del mismo mundo
+    private GameWorld createWorld() {
+        GameWorld world = GameWorld.createDefault(players);
+        world.getPathService().setBudgetMicros(0);
+        Random random = new Random(seed);
+        for (int i = 0; i < extraUnits; i++) {
+            world.spawnUnit(random.nextFloat() * world.getMapWidth(), random.nextFloat() * world.getMapHeight(),
+                i % players);
+        }
+        return world;
+    }
+
+    // Selecciona unas cuantas unidades propias y las manda a un punto, o pide una obra
+    private void giveOrder(LockstepSession session, GameWorld world, int player, Random random, IntArray ids) {
+        int tick = world.getTick();
+        if (random.nextInt(10) == 0) {
+            session.issue(Command.build(tick, player,
+                random.nextFloat() * world.getMapWidth(), random.nextFloat() * world.getMapHeight()));
+            return;
+        }
+        ids.clear();
+        for (int i = 0; i < world.getUnits().size; i++) {
+            Unit u = world.getUnits().get(i);
+            if (u.getOwner() == player && random.nextInt(4) == 0) ids.add(u.getId());
+        }
+        session.issue(Command.select(tick, player, ids));
+        session.issue(Command.move(tick, player,
+            random.nextFloat() * world.getMapWidth(), random.nextFloat() * world.getMapHeight()));
+    }
+
+    private static boolean allStarted(LockstepClient[] clients) {
+        for (LockstepClient c : clients) if (!c.isStarted()) return false;
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package com.armymen.headless;
+
+import com.armymen.simulation.CommandReplay;
+import com.armymen.simulation.GameWorld;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
+/**
+ * Repite una grabación de órdenes (F7 en el juego) a toda velocidad y comprueba
+ * que el estado final coincide con el de la partida original.
+ * Sirve de benchmark de rendimiento con una partida real y de prueba de desincronización.
+ */
+public class ReplayScenario {
+
+    public String file;
+    public boolean parallel = true;
+
+    public String run() {
+        long loadStart = System.nanoTime();
+        CommandReplay replay = CommandReplay.open(Paths.get(file));
+        GameWorld world = replay.getWorld();
+        world.setParallel(parallel);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long alloc0 = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int ticks = 0;
+        while (replay.step()) ticks++;
+        long nanos = System.nanoTime() - start;
+        long alloc = threads.getThreadAllocatedBytes(threadId) - alloc0;
+
+        long hash = world.stateHash();
+        String check;
+        if (!replay.hasExpectedHash()) check = "sin huella (grabación sin cerrar)";
+        else if (replay.getExpectedHash() == hash) check = "OK";
+        else check = String.format("DESINCRONIZADO (esperada %016x)", replay.getExpectedHash());
+
+        return String.format(java.util.Locale.ROOT,
+            "load=%.1f ms  ticks=%d  %.1f ticks/s  %.3f ms/tick  alloc=%.1f B/tick  units=%d  buildings=%d%n"
+                + "hash=%016x  %s",
+            loadNanos / 1e6, ticks, ticks / (nanos / 1e9), nanos / 1e6 / Math.max(1, ticks),
+            (double) alloc / Math.max(1, ticks), world.getUnits().size, world.getBuildings().size, hash, check);
+    }
+}
@@ -0,0 +1,98 @@
+package com.armymen.headless;
+
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.ChunkStreamer;
+import com.armymen.systems.TerrainMap;
+
+import com.badlogic.gdx.math.Rectangle;
+
+import java.nio.file.Paths;
+
+/**
+ * Recorre un mapa en disco con una cámara de 1280x720 que barre el mapa en zigzag, como
+ * GameScreen: pide la vista con un trozo de margen y cada 30 frames lo de las unidades,
+ * y llama a {@link ChunkStreamer#update()}. Mide cuánto tarda update() (lo único que corre
+ * en el hilo principal), cuántos trozos visibles faltaban, cuántas peticiones se quedaron
+ * sin array libre y la memoria usada.
+ */
+public class StreamingScenario {
+
+    private static final float VIEW_WIDTH = 1280f, VIEW_HEIGHT = 720f;
+
+    public String file;
+    public int frames = 1800;
+    public float panSpeed = 40f;            // unidades por frame
+    public long budgetBytes = 4L << 20;
+    public long frameMillis = 16;           // espera entre frames (el hilo de carga trabaja mientras)
+
+    public String run() {
+        long openStart = System.nanoTime();
+        GameWorld world = GameWorld.fromMapFile(Paths.get(file), 1);
+        long openNanos = System.nanoTime() - openStart;
+        TerrainMap terrain = world.getTerrain();
+        ChunkStreamer streamer = new ChunkStreamer(terrain, budgetBytes);
+
+        float chunkSize = TerrainMap.CHUNK_TILES * terrain.getTileSize();
+        Rectangle view = new Rectangle(), area = new Rectangle();
+        float x = VIEW_WIDTH / 2f, y = VIEW_HEIGHT / 2f, dir = 1f;
+        long maxUpdate = 0, totalUpdate = 0;
+        int framesMissing = 0, missingChunks = 0, maxResident = 0, urgentMissing = 0;
+        try {
+            for (int f = 0; f < frames; f++) {
+                // Zigzag: una pasada en x, baja una pantalla y vuelve
+                x += dir * panSpeed;
+                if (x > terrain.getWidth() - VIEW_WIDTH / 2f || x < VIEW_WIDTH / 2f) {
+                    dir = -dir;
+                    y += VIEW_HEIGHT;
+                    if (y > terrain.getHeight() - VIEW_HEIGHT / 2f) y = VIEW_HEIGHT / 2f;
+                }
+                view.set(x - VIEW_WIDTH / 2f, y - VIEW_HEIGHT / 2f, VIEW_WIDTH, VIEW_HEIGHT);
+                area.set(view.x - chunkSize, view.y - chunkSize, view.width + 2 * chunkSize, view.height + 2 * chunkSize);
+
+                long start = System.nanoTime();
+                streamer.requestArea(area, true);
+                if (f % 30 == 0) streamer.requestAroundUnits(world.getUnitStore());
+                streamer.update();
+                long nanos = System.nanoTime() - start;
+                totalUpdate += nanos;
+                maxUpdate = Math.max(maxUpdate, nanos);
+                urgentMissing += streamer.getMissing();
+
+                int missing = countMissing(terrain, view, chunkSize);
+                if (missing > 0) framesMissing++;
+                missingChunks += missing;
+                maxResident = Math.max(maxResident, streamer.getResident());
+                if (frameMillis > 0) Thread.sleep(frameMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            streamer.dispose();
+            world.dispose();
+        }
+
+        Runtime rt = Runtime.getRuntime();
+        long heap = rt.totalMemory() - rt.freeMemory();
+        return String.format(java.util.Locale.ROOT,
+            "mapa=%.0fx%.0f  trozos=%d  abrir=%.1f ms%n"
+                + "update: media=%.3f ms  máx=%.3f ms%n"
+                + "frames con trozos visibles sin cargar=%d de %d (%d trozos)  pedidos con prisa sin cargar=%d%n"
+                + "cargados=%d  descargados=%d  sin array libre=%d  residentes máx=%d de %d (%.1f MB)  heap=%.1f MB",
+            terrain.getWidth(), terrain.getHeight(), terrain.getChunkCount(), openNanos / 1e6,
+            totalUpdate / 1e6 / frames, maxUpdate / 1e6,
+            framesMissing, frames, missingChunks, urgentMissing,
+            streamer.getLoadedTotal(), streamer.getEvictedTotal(), streamer.getSkippedTotal(),
+            maxResident, streamer.getBudgetChunks(),
+            (double) maxResident * TerrainMap.CHUNK_BYTES / (1 << 20), heap / (double) (1 << 20));
+    }
+
+    private static int countMissing(TerrainMap terrain, Rectangle view, float chunkSize) {
+        int cx0 = Math.max(0, (int) (view.x / chunkSize)), cx1 = Math.min(terrain.getChunksX() - 1, (int) ((view.x + view.width) / chunkSize));
+        int cy0 = Math.max(0, (int) (view.y / chunkSize)), cy1 = Math.min(terrain.getChunksY() - 1, (int) ((view.y + view.height) / chunkSize));
+        int missing = 0;
+        for (int cy = cy0; cy <= cy1; cy++)
+            for (int cx = cx0; cx <= cx1; cx++)
+                if (!terrain.isResident(cy * terrain.getChunksX() + cx)) missing++;
+        return missing;
+    }
+}
@@ -3,16 +3,114 @@ package com.armymen.lwjgl3;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.armymen.MainGame;
+import com.armymen.jfr.GameEvents;
+import com.armymen.net.LockstepClient;
+import com.armymen.net.LockstepServer;
+import com.armymen.simulation.GameWorld;
+import com.armymen.systems.MapFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
+    private static final String JFR_FLAG = "--jfr";
+    private static final String HOST_FLAG = "--host=";
+    private static final String JOIN_FLAG = "--join=";
+    private static final String PORT_FLAG = "--port=";
+    private static final String MAP_FLAG = "--map=";
+
     public static void main(String[] args) {
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        startFlightRecorder(args);
+        createApplication(connectLockstep(args), mapSize(args), mapFile(args));
+    }
+
+    /** {@code --map=<size>} sets the side of the single-player map in world units (2000 by default). */
+    private static float mapSize(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith(MAP_FLAG) || arg.endsWith(MapFile.EXTENSION)) continue;
+            try {
+                float size = Float.parseFloat(arg.substring(MAP_FLAG.length()));
+                if (size >= GameWorld.DEFAULT_MAP_SIZE) return size;
+                System.err.println("Map size must be at least " + GameWorld.DEFAULT_MAP_SIZE);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid map size: " + e.getMessage());
+            }
+        }
+        return GameWorld.DEFAULT_MAP_SIZE;
+    }
+
+    /**
+     * {@code --map=<file>.amap} plays single player on a map file (see the headless {@code makemap=}
+     * option); its terrain chunks are streamed from disk instead of living on the heap. The
+     * navigation, path and fog grids are still allocated for the whole map.
+     */
+    private static Path mapFile(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith(MAP_FLAG) && arg.endsWith(MapFile.EXTENSION)) return Paths.get(arg.substring(MAP_FLAG.length()));
+        }
+        return null;
+    }
+
+    /**
+     * {@code --jfr} or {@code --jfr=file.jfr} turns on the game's JFR events and, unless the JVM
+     * is already recording, starts a "profile" recording that is dumped to that file on exit.
+     */
+    private static void startFlightRecorder(String[] args) {
+        for (String arg : args) {
+            if (!arg.equals(JFR_FLAG) && !arg.startsWith(JFR_FLAG + "=")) continue;
+            Path file = arg.length() > JFR_FLAG.length()
+                ? Paths.get(arg.substring(JFR_FLAG.length() + 1))
+                : Paths.get("armymen-" + System.currentTimeMillis() + ".jfr");
+            try {
+                GameEvents.start(file);
+                System.out.println("JFR recording to " + file.toAbsolutePath());
+            } catch (Exception e) {
+                System.err.println("Could not start JFR recording: " + e);
+            }
+            return;
+        }
+    }
+
+    /**
+     * {@code --host=<players>} starts a lockstep relay server in this process and joins it;
+     * {@code --join=<host>} joins someone else's. {@code --port=<n>} overrides the default port.
+     * Returns null (single player) when neither is given or the connection can't be set up.
+     */
+    private static LockstepClient connectLockstep(String[] args) {
+        int players = 0;
+        String host = null;
+        int port = LockstepClient.DEFAULT_PORT;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith(HOST_FLAG)) players = Integer.parseInt(arg.substring(HOST_FLAG.length()));
+                else if (arg.startsWith(JOIN_FLAG)) host = arg.substring(JOIN_FLAG.length());
+                else if (arg.startsWith(PORT_FLAG)) port = Integer.parseInt(arg.substring(PORT_FLAG.length()));
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid network option: " + e.getMessage());
+            return null;
+        }
+        if (players == 0 && host == null) return null;
+
+        try {
+            if (players > 0) {
+                LockstepServer server = new LockstepServer(port, players);
+                server.start();
+                System.out.println("Hosting a " + players + "-player game on port " + server.getPort());
+                host = "localhost";
+            }
+            return LockstepClient.connect(host, port);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not start network game, playing alone: " + e);
+            return null;
+        }
     }
 
-    private static Lwjgl3Application createApplication() {
-        return new Lwjgl3Application(new MainGame(), getDefaultConfiguration());
+    private static Lwjgl3Application createApplication(LockstepClient lockstep, float mapSize, Path mapFile) {
+        return new Lwjgl3Application(new MainGame(lockstep, mapSize, mapFile), getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {